@@ -0,0 +1,205 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAnnotation;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EEnumLiteral;
+import org.eclipse.emf.ecore.EModelElement;
+import org.eclipse.emf.ecore.EOperation;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EParameter;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+
+/**
+ * Builds in-memory Ecore models of a given size for the benchmarks.
+ * 
+ * A model has a root class containing the other classes, where every fifth class is abstract
+ * and the super type of the four classes that follow it. Every class has attributes, a
+ * cross reference, an operation, documentation and a Bikeshed heading.
+ */
+public class SyntheticModels {
+
+	private static final String GENMODEL = "http://www.eclipse.org/emf/2002/GenModel";
+	private static final String BIKESHED_HEADINGS = "https://tabatkins.github.io/bikeshed/headings";
+	private static final String BIKESHED = "https://tabatkins.github.io/bikeshed";
+	private static final String[] HEADINGS = { "Core", "Extensions" };
+
+	private static final EcoreFactory FACTORY = EcoreFactory.eINSTANCE;
+	private static final EcorePackage ECORE = EcorePackage.eINSTANCE;
+
+	private SyntheticModels() {
+	}
+
+	/**
+	 * Creates a resource set holding a single model with the given number of classes
+	 * 
+	 * @param size The number of classes of the model (besides its root class)
+	 * @return The resource set
+	 */
+	public static ResourceSet create(int size) {
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		final Resource resource = new ResourceImpl(URI.createURI("synthetic:/model" + size + ".ecore"));
+		resource.getContents().add(createPackage(size));
+		resourceSet.getResources().add(resource);
+		return resourceSet;
+	}
+
+	/**
+	 * Gets the package of the model held by the given resource set
+	 * 
+	 * @param resourceSet The resource set created by {@link #create(int)}
+	 * @return The package
+	 */
+	public static EPackage getPackage(ResourceSet resourceSet) {
+		return (EPackage) resourceSet.getResources().get(0).getContents().get(0);
+	}
+
+	private static EPackage createPackage(int size) {
+		final EPackage ePackage = FACTORY.createEPackage();
+		ePackage.setName("model" + size);
+		ePackage.setNsPrefix("model" + size);
+		ePackage.setNsURI("http://opencaesar.io/benchmarks/model" + size);
+		document(ePackage, "A synthetic model of " + size + " classes");
+		final EAnnotation headings = FACTORY.createEAnnotation();
+		headings.setSource(BIKESHED_HEADINGS);
+		for (String heading : HEADINGS) {
+			headings.getDetails().put(heading, heading);
+		}
+		ePackage.getEAnnotations().add(headings);
+
+		final EEnum kind = FACTORY.createEEnum();
+		kind.setName("Kind");
+		for (int i = 0; i < 3; i++) {
+			final EEnumLiteral literal = FACTORY.createEEnumLiteral();
+			literal.setName("kind" + i);
+			literal.setValue(i);
+			kind.getELiterals().add(literal);
+		}
+		ePackage.getEClassifiers().add(kind);
+
+		final List<EClass> eClasses = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			final EClass eClass = FACTORY.createEClass();
+			eClass.setName("Class" + i);
+			eClass.setAbstract(i % 5 == 0);
+			if (i % 5 != 0) {
+				eClass.getESuperTypes().add(eClasses.get(i - i % 5));
+			}
+			document(eClass, "The class number " + i);
+			setHeading(eClass, HEADINGS[i % HEADINGS.length]);
+			eClasses.add(eClass);
+		}
+
+		for (int i = 0; i < size; i++) {
+			final EClass eClass = eClasses.get(i);
+			addAttribute(eClass, "name" + i, ECORE.getEString(), 1);
+			addAttribute(eClass, "count" + i, ECORE.getEInt(), 1);
+			addAttribute(eClass, "enabled" + i, ECORE.getEBoolean(), 1);
+			addAttribute(eClass, "kind" + i, kind, 1);
+			addAttribute(eClass, "tags" + i, ECORE.getEString(), -1);
+			addReference(eClass, "next" + i, eClasses.get((i + 1) % size), false, 1);
+			if (eClass.isAbstract() && i + 1 < size) {
+				addReference(eClass, "parts" + i, eClasses.get(i + 1), true, -1);
+			}
+			final EOperation operation = FACTORY.createEOperation();
+			operation.setName("describe" + i);
+			operation.setEType(ECORE.getEString());
+			final EParameter parameter = FACTORY.createEParameter();
+			parameter.setName("prefix");
+			parameter.setEType(ECORE.getEString());
+			operation.getEParameters().add(parameter);
+			eClass.getEOperations().add(operation);
+		}
+		ePackage.getEClassifiers().addAll(eClasses);
+
+		final EClass root = FACTORY.createEClass();
+		root.setName("Model");
+		document(root, "The root of the model");
+		for (int i = 0; i < size; i += 5) {
+			addReference(root, "elements" + i, eClasses.get(i), true, -1);
+		}
+		ePackage.getEClassifiers().add(root);
+		return ePackage;
+	}
+
+	/**
+	 * Gets the classifiers of the given package that have the given Bikeshed heading
+	 * 
+	 * @param ePackage The package
+	 * @param heading The heading
+	 * @return The classifiers
+	 */
+	public static List<EClassifier> getClassifiers(EPackage ePackage, String heading) {
+		final List<EClassifier> classifiers = new ArrayList<>();
+		for (EClassifier eClassifier : ePackage.getEClassifiers()) {
+			final EAnnotation annotation = eClassifier.getEAnnotation(BIKESHED);
+			if (annotation != null && heading.equals(annotation.getDetails().get("heading"))) {
+				classifiers.add(eClassifier);
+			}
+		}
+		return classifiers;
+	}
+
+	private static void addAttribute(EClass eClass, String name, EClassifier type, int upperBound) {
+		final EAttribute attribute = FACTORY.createEAttribute();
+		attribute.setName(name);
+		attribute.setEType(type);
+		attribute.setUpperBound(upperBound);
+		document(attribute, "The " + name + " of " + eClass.getName());
+		eClass.getEStructuralFeatures().add(attribute);
+	}
+
+	private static void addReference(EClass eClass, String name, EClass type, boolean containment, int upperBound) {
+		final EReference reference = FACTORY.createEReference();
+		reference.setName(name);
+		reference.setEType(type);
+		reference.setContainment(containment);
+		reference.setUpperBound(upperBound);
+		document(reference, "The " + name + " of " + eClass.getName());
+		eClass.getEStructuralFeatures().add(reference);
+	}
+
+	private static void document(EModelElement element, String documentation) {
+		final EAnnotation annotation = FACTORY.createEAnnotation();
+		annotation.setSource(GENMODEL);
+		annotation.getDetails().put("documentation", documentation);
+		element.getEAnnotations().add(annotation);
+	}
+
+	private static void setHeading(EModelElement element, String heading) {
+		final EAnnotation annotation = FACTORY.createEAnnotation();
+		annotation.setSource(BIKESHED);
+		annotation.getDetails().put("heading", heading);
+		element.getEAnnotations().add(annotation);
+	}
+}
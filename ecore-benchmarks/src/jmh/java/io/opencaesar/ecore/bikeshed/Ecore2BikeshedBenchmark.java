@@ -0,0 +1,125 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.opencaesar.ecore.benchmarks.SyntheticModels;
+import io.opencaesar.ecore.common.OutputStage;
+import io.opencaesar.ecore.common.PhaseProfiler;
+
+/**
+ * Benchmarks the Ecore to Bikeshed generator over synthetic models of several sizes.
+ * 
+ * Diagrams are generated as PlantUML text but not rendered, so the markdown generation
+ * is measured on its own.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Ecore2BikeshedBenchmark {
+
+	/**
+	 * The number of classes of the model
+	 */
+	@Param({ "10", "100", "1000" })
+	public int size;
+
+	private Resource resource;
+
+	private Map<EClass, List<EClass>> subClassIndex;
+
+	private List<EClassifier> classifiers;
+
+	private OutputStage outputStage;
+
+	private ClassDiagramRenderer renderer;
+
+	private Ecore2Bikeshed generator;
+
+	/**
+	 * Creates the model, its sub class index, and a renderer that is never submitted a diagram
+	 */
+	@Setup
+	public void setup() {
+		final ResourceSet resourceSet = SyntheticModels.create(size);
+		final EPackage ePackage = SyntheticModels.getPackage(resourceSet);
+		resource = resourceSet.getResources().get(0);
+		subClassIndex = Ecore2Bikeshed.indexSubClasses(resourceSet);
+		classifiers = SyntheticModels.getClassifiers(ePackage, "Core");
+		final PhaseProfiler profiler = new PhaseProfiler(false);
+		outputStage = new OutputStage(1, profiler);
+		renderer = new ClassDiagramRenderer(1, null, outputStage, ClassDiagramRenderer.Mode.SOURCE_ONLY, profiler);
+		generator = newGenerator();
+	}
+
+	/**
+	 * Shuts down the renderer and its output stage
+	 */
+	@TearDown
+	public void tearDown() {
+		renderer.close();
+		outputStage.close();
+	}
+
+	/**
+	 * Benchmarks the markdown generation of a package (Ecore2Bikeshed.generate)
+	 * 
+	 * @throws IOException never, since the output is discarded
+	 */
+	@Benchmark
+	public void generate() throws IOException {
+		newGenerator().run(Writer.nullWriter());
+	}
+
+	/**
+	 * Benchmarks the PlantUML generation of a heading's class diagram (Ecore2Bikeshed.generatePlatUMLDiagram)
+	 * 
+	 * @return The PlantUML source
+	 */
+	@Benchmark
+	public String generatePlatUMLDiagram() {
+		return generator.generatePlatUMLDiagram(classifiers);
+	}
+
+	private Ecore2Bikeshed newGenerator() {
+		return new Ecore2Bikeshed(resource, "build", subClassIndex, renderer) {
+			@Override
+			protected void generateClassDiagram(String path, String content) {
+				// skip the rendering, which is not part of the measured generation
+			}
+		};
+	}
+}
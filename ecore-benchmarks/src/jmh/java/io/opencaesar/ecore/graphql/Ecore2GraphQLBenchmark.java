@@ -0,0 +1,118 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.graphql;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.opencaesar.ecore.benchmarks.SyntheticModels;
+
+/**
+ * Benchmarks the phases of the Ecore to GraphQL generator over synthetic models of several sizes
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Ecore2GraphQLBenchmark {
+
+	/**
+	 * The number of classes of the model
+	 */
+	@Param({ "10", "100", "1000" })
+	public int size;
+
+	private Resource resource;
+
+	private Ecore2GraphQL analyzed;
+
+	private Ecore2GraphQLVisitor visited;
+
+	/**
+	 * Creates the model, and a generator that analyzed it
+	 */
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		resource = SyntheticModels.create(size).getResources().get(0);
+		analyzed = new Ecore2GraphQL(resource);
+		analyzed.analyze();
+	}
+
+	/**
+	 * Creates a visitor that visited the model but did not build its types yet
+	 */
+	@Setup(Level.Invocation)
+	public void setupInvocation() {
+		visited = new Ecore2GraphQLVisitor();
+		for (TreeIterator<EObject> it = resource.getAllContents(); it.hasNext(); ) {
+			visited.doSwitch(it.next());
+		}
+	}
+
+	/**
+	 * Benchmarks {@link Ecore2GraphQL#analyze()}
+	 * 
+	 * @return The generator
+	 */
+	@Benchmark
+	public Ecore2GraphQL analyze() {
+		final Ecore2GraphQL e2g = new Ecore2GraphQL(resource);
+		e2g.analyze();
+		return e2g;
+	}
+
+	/**
+	 * Benchmarks {@link Ecore2GraphQL#convert()}
+	 * 
+	 * @return The GraphQL schema
+	 */
+	@Benchmark
+	public String convert() {
+		return analyzed.convert();
+	}
+
+	/**
+	 * Benchmarks {@link Ecore2GraphQL#convertSdl()}
+	 * 
+	 * @return The GraphQL schema
+	 */
+	@Benchmark
+	public String convertSdl() {
+		return analyzed.convertSdl();
+	}
+
+	/**
+	 * Benchmarks {@link Ecore2GraphQLVisitor#build()}
+	 * 
+	 * @return The visitor
+	 */
+	@Benchmark
+	public Ecore2GraphQLVisitor build() {
+		visited.build();
+		return visited;
+	}
+}
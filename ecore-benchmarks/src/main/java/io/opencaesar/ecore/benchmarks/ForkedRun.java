@@ -0,0 +1,136 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Runs the main method of a tool in a JVM forked by the {@link ScalingBenchmark}, then writes
+ * the peak heap and the GC time of the JVM to a properties file.
+ * 
+ * The peak heap is the largest heap usage seen just before a garbage collection, or at the end
+ * of the run. Each of these is the sum of the heap pools at the same moment, so it is never
+ * more than the heap actually used.
+ */
+public class ForkedRun {
+
+	/**
+	 * The property holding the peak heap in bytes
+	 */
+	public static final String PEAK_HEAP_BYTES = "peakHeapBytes";
+
+	/**
+	 * The property holding the GC time in milliseconds
+	 */
+	public static final String GC_MILLIS = "gcMillis";
+
+	private final Set<String> heapPools = new HashSet<>();
+
+	private final AtomicLong peakHeapBytes = new AtomicLong();
+
+	/**
+	 * Default constructor
+	 */
+	public ForkedRun() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				heapPools.add(pool.getName());
+			}
+		}
+	}
+
+	/**
+	 * Main method
+	 * 
+	 * @param args The statistics file, the name of the tool's main class, then the tool's arguments
+	 * @throws Throwable when the tool fails
+	 */
+	public static void main(final String... args) throws Throwable {
+		final ForkedRun run = new ForkedRun();
+		run.listen();
+		try {
+			Class.forName(args[1])
+				.getMethod("main", String[].class)
+				.invoke(null, (Object) Arrays.copyOfRange(args, 2, args.length));
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+		run.write(new File(args[0]));
+	}
+
+	private void listen() {
+		final NotificationListener listener = (Notification notification, Object handback) -> {
+			if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+				final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+				record(info.getGcInfo().getMemoryUsageBeforeGc());
+			}
+		};
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (gc instanceof NotificationEmitter) {
+				((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+			}
+		}
+	}
+
+	private void record(Map<String, MemoryUsage> usages) {
+		long used = 0;
+		for (Map.Entry<String, MemoryUsage> usage : usages.entrySet()) {
+			if (heapPools.contains(usage.getKey())) {
+				used += usage.getValue().getUsed();
+			}
+		}
+		peakHeapBytes.accumulateAndGet(used, Math::max);
+	}
+
+	private void write(File file) throws IOException {
+		peakHeapBytes.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+		long gcMillis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcMillis += Math.max(0, gc.getCollectionTime());
+		}
+		final Properties statistics = new Properties();
+		statistics.setProperty(PEAK_HEAP_BYTES, String.valueOf(peakHeapBytes.get()));
+		statistics.setProperty(GC_MILLIS, String.valueOf(gcMillis));
+		try (OutputStream out = new FileOutputStream(file)) {
+			statistics.store(out, null);
+		}
+	}
+}
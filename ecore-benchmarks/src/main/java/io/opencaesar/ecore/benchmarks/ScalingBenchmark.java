@@ -0,0 +1,306 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+import io.opencaesar.ecore.bikeshed.Ecore2BikeshedApp;
+import io.opencaesar.ecore.graphql.Ecore2GraphQLApp;
+
+/**
+ * Runs both CLIs end to end over a sweep of synthetic model sizes, and reports the wall time,
+ * CPU time and allocated bytes of each of their phases, and their peak heap and GC time,
+ * as CSV and JSON.
+ * 
+ * Each CLI runs in its own JVM for each case, so no case pays for the class loading, JIT
+ * compilation or cached Xcore injector of another. The phases are read from the JSON report
+ * the CLI writes with --profile-report. The peak heap and GC time cover the whole JVM, and
+ * are measured inside it by {@link ForkedRun}.
+ */
+public class ScalingBenchmark {
+
+	@Parameter(
+		names = { "--output", "-o" },
+		description = "Location of the report and model output folder (Required)",
+		required = true,
+		order = 1)
+	private String outputFolderPath;
+
+	@Parameter(
+		names = { "--classes" },
+		description = "Comma separated numbers of classes to sweep (Optional, defaults to 100,1000)",
+		order = 2)
+	private List<Integer> classes = null;
+
+	@Parameter(
+		names = { "--depth" },
+		description = "Comma separated inheritance depths to sweep (Optional, defaults to 5)",
+		order = 3)
+	private List<Integer> depths = null;
+
+	@Parameter(
+		names = { "--fan-out" },
+		description = "Comma separated containment fan-outs to sweep (Optional, defaults to 2)",
+		order = 4)
+	private List<Integer> fanOuts = null;
+
+	@Parameter(
+		names = { "--files" },
+		description = "Comma separated numbers of files to sweep (Optional, defaults to 1,10)",
+		order = 5)
+	private List<Integer> files = null;
+
+	@Parameter(
+		names = { "--diagrams" },
+		description = "The Bikeshed diagram mode: inline, source-only or lazy (Optional, defaults to inline)",
+		order = 6)
+	private String diagrams = "inline";
+
+	@Parameter(
+		names = { "--max-heap" },
+		description = "The maximum heap size of the JVM running each CLI (Optional, defaults to 4g)",
+		order = 7)
+	private String maxHeap = "4g";
+
+	@Parameter(
+		names = { "--help", "-h" },
+		description = "Displays summary of options",
+		help = true,
+		order = 8)
+	private boolean help;
+
+	/**
+	 * Matches the phase summaries of a profile report, whose phase names need no escaping
+	 */
+	private static final Pattern PHASE = Pattern.compile(
+			"\\{\"phase\": \"([^\"\\\\]*)\", \"count\": (\\d+), \"wallMillis\": (\\d+), \"cpuMillis\": (\\d+), \"allocatedBytes\": (\\d+)\\}");
+
+	/**
+	 * The phase of the measurement covering the whole run of a CLI, from the start of its JVM
+	 */
+	private static final String TOTAL = "total";
+
+	private final Logger LOGGER = LogManager.getLogger(ScalingBenchmark.class);
+
+	private final List<Measurement> measurements = new ArrayList<>();
+
+	/**
+	 * A measurement, whose values are -1 when not measured
+	 */
+	private static class Measurement {
+		int classes;
+		int depth;
+		int fanOut;
+		int files;
+		String tool;
+		String phase;
+		long count = -1;
+		long wallMillis = -1;
+		long cpuMillis = -1;
+		long allocatedBytes = -1;
+		long peakHeapBytes = -1;
+		long gcMillis = -1;
+	}
+
+	/**
+	 * Default constructor
+	 */
+	public ScalingBenchmark() {
+	}
+
+	/**
+	 * Main method
+	 * 
+	 * @param args Application arguments
+	 * @throws IOException when a model or report cannot be written
+	 */
+	public static void main(final String... args) throws IOException {
+		final ScalingBenchmark benchmark = new ScalingBenchmark();
+		final JCommander builder = JCommander.newBuilder().addObject(benchmark).build();
+		builder.parse(args);
+		if (benchmark.help) {
+			builder.usage();
+			return;
+		}
+		benchmark.run();
+	}
+
+	/**
+	 * Runs the sweep and writes the reports
+	 * 
+	 * @throws IOException when a model or report cannot be written
+	 */
+	public void run() throws IOException {
+		final File outputFolder = new File(outputFolderPath);
+		for (int classCount : (classes != null ? classes : Arrays.asList(100, 1000))) {
+			for (int depth : (depths != null ? depths : Arrays.asList(5))) {
+				for (int fanOut : (fanOuts != null ? fanOuts : Arrays.asList(2))) {
+					for (int fileCount : (files != null ? files : Arrays.asList(1, 10))) {
+						runCase(outputFolder, classCount, depth, fanOut, fileCount);
+					}
+				}
+			}
+		}
+		writeCsv(new File(outputFolder, "scaling.csv"));
+		writeJson(new File(outputFolder, "scaling.json"));
+		LOGGER.info("Reports written to " + outputFolder.getAbsolutePath());
+	}
+
+	private void runCase(File outputFolder, int classCount, int depth, int fanOut, int fileCount) throws IOException {
+		final String name = "c" + classCount + "-d" + depth + "-f" + fanOut + "-n" + fileCount;
+		final File caseFolder = new File(outputFolder, name);
+		final File modelFolder = new File(caseFolder, "model");
+		LOGGER.info("Running " + name);
+
+		final long start = System.nanoTime();
+		new XcoreModelGenerator(classCount, depth, fanOut, fileCount).generate(modelFolder);
+		LOGGER.info("Generated the model in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+		final List<Measurement> caseMeasurements = new ArrayList<>();
+		caseMeasurements.addAll(measure(caseFolder, "ecore2graphql", Ecore2GraphQLApp.class,
+				"-i", modelFolder.getAbsolutePath(),
+				"-o", new File(caseFolder, "graphql").getAbsolutePath()));
+		caseMeasurements.addAll(measure(caseFolder, "ecore2bikeshed", Ecore2BikeshedApp.class,
+				"-i", modelFolder.getAbsolutePath(),
+				"-o", new File(caseFolder, "bikeshed").getAbsolutePath(),
+				"--diagrams", diagrams));
+		for (Measurement m : caseMeasurements) {
+			m.classes = classCount;
+			m.depth = depth;
+			m.fanOut = fanOut;
+			m.files = fileCount;
+		}
+		measurements.addAll(caseMeasurements);
+	}
+
+	/**
+	 * Runs the given CLI in a new JVM with a profile report
+	 * 
+	 * @return The measurements of its phases, followed by the measurement of the whole run
+	 */
+	private List<Measurement> measure(File caseFolder, String tool, Class<?> mainClass, String... args) throws IOException {
+		final File profileFile = new File(caseFolder, tool + "-profile.json");
+		final File statisticsFile = new File(caseFolder, tool + "-jvm.properties");
+		final List<String> command = new ArrayList<>(Arrays.asList(
+				Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+				"-Xmx" + maxHeap,
+				"-cp", System.getProperty("java.class.path"),
+				ForkedRun.class.getName(),
+				statisticsFile.getAbsolutePath(),
+				mainClass.getName()));
+		command.addAll(Arrays.asList(args));
+		command.addAll(Arrays.asList("--profile-report", profileFile.getAbsolutePath()));
+
+		final long start = System.nanoTime();
+		final int exitCode;
+		try {
+			exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running " + tool, e);
+		}
+		final Measurement total = new Measurement();
+		total.tool = tool;
+		total.phase = TOTAL;
+		total.count = 1;
+		total.wallMillis = (System.nanoTime() - start) / 1_000_000;
+		if (exitCode != 0) {
+			throw new RuntimeException(tool + " failed with exit code " + exitCode);
+		}
+
+		final Properties statistics = new Properties();
+		try (InputStream in = new FileInputStream(statisticsFile)) {
+			statistics.load(in);
+		}
+		total.peakHeapBytes = Long.parseLong(statistics.getProperty(ForkedRun.PEAK_HEAP_BYTES));
+		total.gcMillis = Long.parseLong(statistics.getProperty(ForkedRun.GC_MILLIS));
+
+		final List<Measurement> phases = new ArrayList<>();
+		final Matcher matcher = PHASE.matcher(new String(Files.readAllBytes(profileFile.toPath()), StandardCharsets.UTF_8));
+		while (matcher.find()) {
+			final Measurement phase = new Measurement();
+			phase.tool = tool;
+			phase.phase = matcher.group(1);
+			phase.count = Long.parseLong(matcher.group(2));
+			phase.wallMillis = Long.parseLong(matcher.group(3));
+			phase.cpuMillis = Long.parseLong(matcher.group(4));
+			phase.allocatedBytes = Long.parseLong(matcher.group(5));
+			phases.add(phase);
+		}
+		phases.add(total);
+		LOGGER.info(String.format(Locale.ROOT, "%s: wall= %d ms, peak heap= %d MB, gc= %d ms",
+				tool, total.wallMillis, total.peakHeapBytes / (1024 * 1024), total.gcMillis));
+		return phases;
+	}
+
+	private void writeCsv(File file) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			out.write("classes,depth,fanOut,files,tool,phase,count,wallMillis,cpuMillis,allocatedBytes,peakHeapBytes,gcMillis\n");
+			for (Measurement m : measurements) {
+				out.write(m.classes + "," + m.depth + "," + m.fanOut + "," + m.files + "," + m.tool + "," + m.phase
+						+ "," + csv(m.count) + "," + csv(m.wallMillis) + "," + csv(m.cpuMillis) + "," + csv(m.allocatedBytes)
+						+ "," + csv(m.peakHeapBytes) + "," + csv(m.gcMillis) + "\n");
+			}
+		}
+	}
+
+	private void writeJson(File file) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			out.write("[\n");
+			for (int i = 0; i < measurements.size(); i++) {
+				final Measurement m = measurements.get(i);
+				out.write("  {\"classes\": " + m.classes + ", \"depth\": " + m.depth + ", \"fanOut\": " + m.fanOut
+						+ ", \"files\": " + m.files + ", \"tool\": \"" + m.tool + "\", \"phase\": \"" + m.phase + "\""
+						+ json("count", m.count) + json("wallMillis", m.wallMillis) + json("cpuMillis", m.cpuMillis)
+						+ json("allocatedBytes", m.allocatedBytes) + json("peakHeapBytes", m.peakHeapBytes)
+						+ json("gcMillis", m.gcMillis) + "}"
+						+ (i < measurements.size() - 1 ? "," : "") + "\n");
+			}
+			out.write("]\n");
+		}
+	}
+
+	private static String csv(long value) {
+		return value < 0 ? "" : String.valueOf(value);
+	}
+
+	private static String json(String name, long value) {
+		return value < 0 ? "" : ", \"" + name + "\": " + value;
+	}
+}
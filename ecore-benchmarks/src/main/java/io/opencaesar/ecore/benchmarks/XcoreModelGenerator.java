@@ -0,0 +1,133 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates synthetic Xcore models from size parameters.
+ * 
+ * The classes are split in contiguous blocks across the files, one package per file. The
+ * classes form inheritance chains of the given depth, the first class of each chain being
+ * abstract, and every class contains the given number of following classes, so references
+ * cross files whenever a chain or a containment spans two blocks.
+ */
+public class XcoreModelGenerator {
+
+	private static final String PACKAGE = "io.opencaesar.benchmarks.m";
+
+	private final int classes;
+
+	private final int depth;
+
+	private final int fanOut;
+
+	private final int files;
+
+	/**
+	 * Creates a new generator
+	 * 
+	 * @param classes The total number of classes
+	 * @param depth The depth of the inheritance chains
+	 * @param fanOut The number of containment references of each class
+	 * @param files The number of files (and packages) the classes are split across
+	 */
+	public XcoreModelGenerator(int classes, int depth, int fanOut, int files) {
+		this.classes = classes;
+		this.depth = Math.max(1, depth);
+		this.fanOut = fanOut;
+		this.files = Math.max(1, Math.min(files, classes));
+	}
+
+	/**
+	 * Writes the model files to the given folder
+	 * 
+	 * @param folder The folder
+	 * @return The written files
+	 * @throws IOException when a file cannot be written
+	 */
+	public List<File> generate(File folder) throws IOException {
+		Files.createDirectories(folder.toPath());
+		final List<File> written = new ArrayList<>();
+		for (int f = 0; f < files; f++) {
+			final File file = new File(folder, "m" + f + ".xcore");
+			try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+				writeFile(out, f);
+			}
+			written.add(file);
+		}
+		return written;
+	}
+
+	private void writeFile(BufferedWriter out, int f) throws IOException {
+		out.write("@GenModel(documentation=\"A synthetic model of " + classes + " classes (part " + f + ")\")\n");
+		out.write("package " + PACKAGE + f + "\n\n");
+		out.write("enum Kind" + f + " {\n\tfirst\n\tsecond = 1\n\tthird = 2\n}\n\n");
+		for (int i = first(f); i < first(f + 1); i++) {
+			writeClass(out, f, i);
+		}
+	}
+
+	private void writeClass(BufferedWriter out, int f, int i) throws IOException {
+		out.write("@GenModel(documentation=\"The class number " + i + "\")\n");
+		if (i % depth == 0) {
+			out.write("abstract class C" + i);
+		} else {
+			out.write("class C" + i + " extends " + name(f, i - 1));
+		}
+		out.write(" {\n");
+		out.write("\tString name" + i + "\n");
+		out.write("\tint count" + i + "\n");
+		out.write("\tboolean enabled" + i + "\n");
+		out.write("\tKind" + f + " kind" + i + "\n");
+		out.write("\tString[] tags" + i + "\n");
+		out.write("\trefers " + name(f, (i + 1) % classes) + " next" + i + "\n");
+		for (int c = 1; c <= fanOut && i + c < classes; c++) {
+			out.write("\tcontains " + name(f, i + c) + "[] parts" + i + "_" + c + "\n");
+		}
+		out.write("\top String describe" + i + "(String prefix)\n");
+		out.write("}\n\n");
+	}
+
+	private String name(int f, int i) {
+		final int file = fileOf(i);
+		return (file == f) ? "C" + i : PACKAGE + file + ".C" + i;
+	}
+
+	private int first(int f) {
+		return (int) ((long) classes * f / files);
+	}
+
+	private int fileOf(int i) {
+		int f = (int) ((long) i * files / classes);
+		while (first(f + 1) <= i) {
+			f++;
+		}
+		while (first(f) > i) {
+			f--;
+		}
+		return f;
+	}
+}
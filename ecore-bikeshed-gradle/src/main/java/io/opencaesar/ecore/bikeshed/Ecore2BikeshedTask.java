@@ -22,16 +22,35 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.inject.Inject;
+
 import org.gradle.api.DefaultTask;
+import org.gradle.api.file.FileTree;
+import org.gradle.api.file.FileType;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
-import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
-import org.gradle.api.tasks.TaskExecutionException;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
 /**
  * A gradle task to invoke the Ecore2Bikeshed tool 
  */
+@CacheableTask
 public abstract class Ecore2BikeshedTask extends DefaultTask {
 	
 	/**
@@ -45,8 +64,21 @@ public abstract class Ecore2BikeshedTask extends DefaultTask {
 	 * 
 	 * @return Directory Property
 	 */
-	@InputDirectory
+	@Internal
 	public abstract Property<File> getInputFolderPath();
+
+	/**
+	 * The files of the Ecore input folder
+	 * 
+	 * @return File Tree
+	 */
+	@Incremental
+	@InputFiles
+	@PathSensitive(PathSensitivity.RELATIVE)
+	@IgnoreEmptyDirectories
+	public FileTree getInputFiles() {
+		return getObjects().fileTree().from(getInputFolderPath());
+	}
     
 	/**
 	 * The path of Bikeshed output folder
@@ -55,12 +87,115 @@ public abstract class Ecore2BikeshedTask extends DefaultTask {
 	 */
 	@OutputDirectory
     public abstract Property<File> getOutputFolderPath();
+
+	/**
+	 * The glob patterns of the input files to include (Optional)
+	 * 
+	 * @return String List Property
+	 */
+	@Optional
+	@Input
+    public abstract ListProperty<String> getIncludes();
+
+	/**
+	 * The glob patterns of the input files and folders to exclude (Optional)
+	 * 
+	 * @return String List Property
+	 */
+	@Optional
+	@Input
+    public abstract ListProperty<String> getExcludes();
+
+	/**
+	 * The maximum number of diagrams rendered in parallel (Optional)
+	 * 
+	 * @return Integer Property
+	 */
+	@Internal
+    public abstract Property<Integer> getParallelism();
+
+	/**
+	 * The maximum number of input files parsed in parallel (Optional)
+	 * 
+	 * @return Integer Property
+	 */
+	@Internal
+    public abstract Property<Integer> getThreads();
+
+	/**
+	 * The path of a folder caching rendered diagrams across runs (Optional)
+	 * 
+	 * @return Directory Property
+	 */
+	@Internal
+    public abstract Property<File> getCacheFolderPath();
+
+	/**
+	 * The path of a folder caching loaded Xcore models across runs (Optional)
+	 * 
+	 * @return Directory Property
+	 */
+	@Internal
+    public abstract Property<File> getModelCacheFolderPath();
+
+	/**
+	 * How class diagrams are rendered: inline, source-only or lazy (Optional)
+	 * 
+	 * @return String Property
+	 */
+	@Optional
+	@Input
+    public abstract Property<String> getDiagrams();
+
+	/**
+	 * Whether to log the wall time, CPU time and allocated bytes of each phase and input file (Optional)
+	 * 
+	 * @return Boolean Property
+	 */
+	@Internal
+    public abstract Property<Boolean> getProfile();
+
+	/**
+	 * The path of a JSON file to write the profile to (Optional)
+	 * 
+	 * @return File Property
+	 */
+	@Internal
+    public abstract Property<File> getProfileReportPath();
         
+	/**
+	 * The version of the Ecore2Bikeshed tool
+	 * 
+	 * @return Version String
+	 */
+	@Input
+	public String getToolVersion() {
+		return new Ecore2BikeshedApp().getAppVersion();
+	}
+
+    /**
+     * The object factory used to create the input file tree
+     * 
+     * @return Object Factory
+     */
+    @Inject
+    protected abstract ObjectFactory getObjects();
+
+    /**
+     * The worker executor used to run the tool
+     * 
+     * @return Worker Executor
+     */
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
     /**
      * The gradle task action logic.
+     * 
+     * @param inputChanges The changes of the input files since the last execution
      */
     @TaskAction
-    public void run() {
+    public void run(InputChanges inputChanges) {
 		List<String> args = new ArrayList<String>();
 		if (getInputFolderPath().isPresent()) {
 			args.add("-i");
@@ -70,10 +205,55 @@ public abstract class Ecore2BikeshedTask extends DefaultTask {
 			args.add("-o");
 			args.add(getOutputFolderPath().get().getAbsolutePath());
 		}
-		try {
-        	Ecore2BikeshedApp.main(args.toArray(new String[0]));
-		} catch (Exception e) {
-			throw new TaskExecutionException(this, e);
+		if (getIncludes().isPresent()) {
+			for (String include : getIncludes().get()) {
+				args.add("--include");
+				args.add(include);
+			}
+		}
+		if (getExcludes().isPresent()) {
+			for (String exclude : getExcludes().get()) {
+				args.add("--exclude");
+				args.add(exclude);
+			}
+		}
+		if (getParallelism().isPresent()) {
+			args.add("--parallelism");
+			args.add(getParallelism().get().toString());
+		}
+		if (getThreads().isPresent()) {
+			args.add("--threads");
+			args.add(getThreads().get().toString());
+		}
+		if (getCacheFolderPath().isPresent()) {
+			args.add("--cache");
+			args.add(getCacheFolderPath().get().getAbsolutePath());
+		}
+		if (getModelCacheFolderPath().isPresent()) {
+			args.add("--model-cache");
+			args.add(getModelCacheFolderPath().get().getAbsolutePath());
+		}
+		if (getDiagrams().isPresent()) {
+			args.add("--diagrams");
+			args.add(getDiagrams().get());
+		}
+		if (getProfile().isPresent() && getProfile().get()) {
+			args.add("--profile");
+		}
+		if (getProfileReportPath().isPresent()) {
+			args.add("--profile-report");
+			args.add(getProfileReportPath().get().getAbsolutePath());
+		}
+		// regenerate only the changed inputs and their dependents, and delete the outputs of the removed ones
+		// (a non incremental execution reports every input file as added, so everything is regenerated)
+		args.add("--incremental");
+		for (FileChange change : inputChanges.getFileChanges(getInputFiles())) {
+			if (change.getFileType() == FileType.FILE) {
+				args.add(change.getChangeType() == ChangeType.REMOVED ? "--removed" : "--changed");
+				args.add(change.getFile().getAbsolutePath());
+			}
 		}
+		final WorkQueue workQueue = getWorkerExecutor().classLoaderIsolation();
+		workQueue.submit(Ecore2BikeshedWorkAction.class, parameters -> parameters.getArguments().set(args));
 	}
 }
\ No newline at end of file
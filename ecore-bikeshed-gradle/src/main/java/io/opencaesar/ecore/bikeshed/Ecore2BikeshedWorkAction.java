@@ -0,0 +1,38 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import org.gradle.workers.WorkAction;
+
+/**
+ * The work submitted by the Ecore2BikeshedTask to run the Ecore2Bikeshed tool in a Gradle worker
+ */
+public abstract class Ecore2BikeshedWorkAction implements WorkAction<Ecore2BikeshedWorkParameters> {
+
+	/**
+	 * Creates a new Ecore2BikeshedWorkAction object
+	 */
+	public Ecore2BikeshedWorkAction() {
+	}
+
+	@Override
+	public void execute() {
+		Ecore2BikeshedApp.main(getParameters().getArguments().get().toArray(new String[0]));
+	}
+}
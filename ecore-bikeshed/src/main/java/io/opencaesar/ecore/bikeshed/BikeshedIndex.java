@@ -0,0 +1,159 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EAnnotation;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EEnumLiteral;
+import org.eclipse.emf.ecore.EModelElement;
+import org.eclipse.emf.ecore.ENamedElement;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+/**
+ * An index of the Bikeshed metadata of an EPackage, built in a single pass over the package.
+ * 
+ * It maps each element to its heading, documentation and Bikeshed annotation details,
+ * and each heading to its classifiers sorted by name.
+ */
+class BikeshedIndex {
+
+	static final String GENMODEL = "http://www.eclipse.org/emf/2002/GenModel";
+	static final String BIKESHED_HEADINGS = "https://tabatkins.github.io/bikeshed/headings";
+	static final String BIKESHED = "https://tabatkins.github.io/bikeshed";
+	static final String HEADING = "heading";
+
+	private static class Entry {
+		String heading;
+		String documentation = "";
+		Map<String, String> annotations = Collections.emptyMap();
+	}
+
+	private final List<String> headings = new ArrayList<>();
+	private final Map<String, List<EClassifier>> classifiers = new HashMap<>();
+	private final Map<EModelElement, Entry> entries = new HashMap<>();
+
+	/**
+	 * Creates a new index of the given package
+	 * 
+	 * @param ePackage The package
+	 */
+	BikeshedIndex(EPackage ePackage) {
+		for (EAnnotation annotation : ePackage.getEAnnotations()) {
+			if (BIKESHED_HEADINGS.equals(annotation.getSource())) {
+				for (Map.Entry<String, String> detail : annotation.getDetails()) {
+					headings.add(detail.getKey());
+				}
+			}
+		}
+		headings.add(null);
+
+		index(ePackage);
+		for (EClassifier eClassifier : ePackage.getEClassifiers()) {
+			final Entry entry = index(eClassifier);
+			classifiers.computeIfAbsent(entry.heading, k -> new ArrayList<>()).add(eClassifier);
+			if (eClassifier instanceof EClass) {
+				for (EStructuralFeature feature : ((EClass) eClassifier).getEStructuralFeatures()) {
+					index(feature);
+				}
+			} else if (eClassifier instanceof EEnum) {
+				for (EEnumLiteral literal : ((EEnum) eClassifier).getELiterals()) {
+					index(literal);
+				}
+			}
+		}
+		classifiers.values().forEach(list -> list.sort(Comparator.comparing(EClassifier::getName)));
+	}
+
+	/**
+	 * @return The headings declared by the package, followed by null for the classifiers of no declared heading
+	 */
+	public List<String> getHeadings() {
+		return Collections.unmodifiableList(headings);
+	}
+
+	/**
+	 * @param heading A heading
+	 * @return The classifiers of the given heading sorted by name
+	 */
+	public List<EClassifier> getClassifiers(String heading) {
+		return classifiers.getOrDefault(heading, Collections.emptyList());
+	}
+
+	/**
+	 * @param element A named element
+	 * @return The heading annotation of the element, or its name if none
+	 */
+	public String getHeading(ENamedElement element) {
+		return entry(element).heading;
+	}
+
+	/**
+	 * @param element A named element
+	 * @return The GenModel documentation of the element, or an empty string if none
+	 */
+	public String getDocumentation(ENamedElement element) {
+		return entry(element).documentation;
+	}
+
+	/**
+	 * @param element A model element
+	 * @param key The key of a Bikeshed annotation detail
+	 * @return The value of the Bikeshed annotation detail of the element, or null if none
+	 */
+	public String getAnnotationValue(EModelElement element, String key) {
+		return entry(element).annotations.get(key);
+	}
+
+	private Entry entry(EModelElement element) {
+		final Entry entry = entries.get(element);
+		return (entry != null) ? entry : index(element);
+	}
+
+	private Entry index(EModelElement element) {
+		final Entry entry = new Entry();
+		boolean documented = false;
+		boolean annotated = false;
+		for (EAnnotation annotation : element.getEAnnotations()) {
+			if (!documented && GENMODEL.equals(annotation.getSource())) {
+				final String documentation = annotation.getDetails().get("documentation");
+				entry.documentation = (documentation != null) ? documentation : "";
+				documented = true;
+			} else if (!annotated && BIKESHED.equals(annotation.getSource())) {
+				entry.annotations = new HashMap<>(annotation.getDetails().map());
+				annotated = true;
+			}
+		}
+		if (element instanceof ENamedElement) {
+			final String heading = entry.annotations.get(HEADING);
+			entry.heading = (heading != null) ? heading : ((ENamedElement) element).getName();
+		}
+		entries.put(element, entry);
+		return entry;
+	}
+}
@@ -0,0 +1,254 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * The manifest of the last Bikeshed generation, kept in the output folder for incremental runs.
+ * 
+ * It records the diagram mode of the run and, for each input file (relative to the input
+ * folder), the hash of its content, the other input files it depends on, and the output files
+ * (relative to the output folder) it produced.
+ */
+class BikeshedManifest {
+
+	/**
+	 * The name of the manifest file in the output folder
+	 */
+	static final String FILE_NAME = ".ecore2bikeshed.manifest";
+
+	private static final String VERSION = "version";
+	private static final String DIAGRAMS = "diagrams";
+	private static final String HASH = ".hash";
+	private static final String DEPENDENCIES = ".dependencies";
+	private static final String OUTPUTS = ".outputs";
+	private static final String SEPARATOR = "|";
+
+	private final File file;
+	private final String version;
+	private final String diagrams;
+	private String recordedDiagrams;
+	private final Map<String, Entry> entries = new TreeMap<>();
+
+	private static class Entry {
+		String hash;
+		Set<String> dependencies = new TreeSet<>();
+		Set<String> outputs = new TreeSet<>();
+	}
+
+	private BikeshedManifest(File file, String version, String diagrams) {
+		this.file = file;
+		this.version = version;
+		this.diagrams = diagrams;
+	}
+
+	/**
+	 * Loads the manifest from the given output folder. The manifest is empty when
+	 * no manifest exists or it was written by a different version of the tool.
+	 * 
+	 * @param outputFolder The output folder
+	 * @param version The version of the tool
+	 * @param diagrams The diagram mode of the current run, recorded when the manifest is saved
+	 * @return The manifest
+	 * @throws IOException when the manifest cannot be read
+	 */
+	static BikeshedManifest load(File outputFolder, String version, String diagrams) throws IOException {
+		final BikeshedManifest manifest = new BikeshedManifest(new File(outputFolder, FILE_NAME), version, diagrams);
+		if (!manifest.file.isFile()) {
+			return manifest;
+		}
+		final Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(manifest.file.toPath())) {
+			properties.load(in);
+		}
+		if (!version.equals(properties.getProperty(VERSION))) {
+			return manifest;
+		}
+		manifest.recordedDiagrams = properties.getProperty(DIAGRAMS);
+		for (String key : properties.stringPropertyNames()) {
+			if (key.endsWith(HASH)) {
+				final String input = key.substring(0, key.length() - HASH.length());
+				final Entry entry = new Entry();
+				entry.hash = properties.getProperty(key);
+				entry.dependencies.addAll(split(properties.getProperty(input + DEPENDENCIES, "")));
+				entry.outputs.addAll(split(properties.getProperty(input + OUTPUTS, "")));
+				manifest.entries.put(input, entry);
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Saves the manifest to the output folder
+	 * 
+	 * @throws IOException when the manifest cannot be written
+	 */
+	void save() throws IOException {
+		final Properties properties = new Properties();
+		properties.setProperty(VERSION, version);
+		properties.setProperty(DIAGRAMS, diagrams);
+		entries.forEach((input, entry) -> {
+			properties.setProperty(input + HASH, entry.hash);
+			properties.setProperty(input + DEPENDENCIES, String.join(SEPARATOR, entry.dependencies));
+			properties.setProperty(input + OUTPUTS, String.join(SEPARATOR, entry.outputs));
+		});
+		file.getParentFile().mkdirs();
+		try (OutputStream out = Files.newOutputStream(file.toPath())) {
+			properties.store(out, "Ecore to Bikeshed incremental manifest");
+		}
+	}
+
+	/**
+	 * @return The recorded input files
+	 */
+	Set<String> getInputs() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * @return The recorded diagram mode of the last run, or null if not recorded
+	 */
+	String getDiagrams() {
+		return recordedDiagrams;
+	}
+
+	/**
+	 * @param input An input file
+	 * @return The recorded hash of the input file, or null if not recorded
+	 */
+	String getHash(String input) {
+		final Entry entry = entries.get(input);
+		return (entry != null) ? entry.hash : null;
+	}
+
+	/**
+	 * @param input An input file
+	 * @return The recorded input files that the given input file depends on
+	 */
+	Set<String> getDependencies(String input) {
+		final Entry entry = entries.get(input);
+		return (entry != null) ? Collections.unmodifiableSet(entry.dependencies) : Collections.emptySet();
+	}
+
+	/**
+	 * @param inputs Some input files
+	 * @return The recorded input files that depend on any of the given input files
+	 */
+	Set<String> getDependents(Collection<String> inputs) {
+		return entries.entrySet().stream()
+				.filter(e -> e.getValue().dependencies.stream().anyMatch(inputs::contains))
+				.map(e -> e.getKey())
+				.collect(Collectors.toCollection(LinkedHashSet::new));
+	}
+
+	/**
+	 * @param input An input file
+	 * @return The recorded output files of the given input file
+	 */
+	Set<String> getOutputs(String input) {
+		final Entry entry = entries.get(input);
+		return (entry != null) ? Collections.unmodifiableSet(entry.outputs) : Collections.emptySet();
+	}
+
+	/**
+	 * @param output An output file
+	 * @param input An input file
+	 * @return Whether the given output file is recorded for an input file other than the given one
+	 */
+	boolean isOutputOfOtherInput(String output, String input) {
+		return entries.entrySet().stream()
+				.anyMatch(e -> !e.getKey().equals(input) && e.getValue().outputs.contains(output));
+	}
+
+	/**
+	 * Records the given input file
+	 * 
+	 * @param input The input file
+	 * @param hash The hash of the input file content
+	 * @param dependencies The input files that the input file depends on
+	 * @param outputs The output files produced from the input file
+	 */
+	void put(String input, String hash, Collection<String> dependencies, Collection<String> outputs) {
+		final Entry entry = new Entry();
+		entry.hash = hash;
+		entry.dependencies.addAll(dependencies);
+		entry.outputs.addAll(outputs);
+		entries.put(input, entry);
+	}
+
+	/**
+	 * Forgets the given input file
+	 * 
+	 * @param input The input file
+	 */
+	void remove(String input) {
+		entries.remove(input);
+	}
+
+	/**
+	 * Computes the hash of the content of the given file
+	 * 
+	 * @param file The file
+	 * @return The SHA-256 hash of the file content as a hex string
+	 * @throws IOException when the file cannot be read
+	 */
+	static String hash(File file) throws IOException {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			try (InputStream in = Files.newInputStream(file.toPath())) {
+				final byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+				}
+			}
+			final StringBuilder hash = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hash.append(String.format("%02x", b));
+			}
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Collection<String> split(String value) {
+		if (value.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(value.split("\\" + SEPARATOR));
+	}
+}
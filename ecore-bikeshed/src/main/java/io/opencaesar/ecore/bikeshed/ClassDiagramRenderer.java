@@ -0,0 +1,327 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.SourceStringReader;
+import net.sourceforge.plantuml.version.Version;
+
+import io.opencaesar.ecore.common.OutputStage;
+import io.opencaesar.ecore.common.PhaseProfiler;
+
+/**
+ * Renders PlantUML class diagrams to SVG files on a bounded pool of workers.
+ * 
+ * Diagrams are identified by a hash of their PlantUML source, so identical diagrams
+ * are rendered once per run, and once across runs when a cache folder is given. Each SVG
+ * is written out as soon as it is rendered, and only the file it was written to is kept
+ * for the identical diagrams that follow.
+ */
+class ClassDiagramRenderer implements AutoCloseable {
+
+	/**
+	 * The ways diagrams can be rendered
+	 */
+	enum Mode {
+		/**
+		 * Renders every diagram to SVG
+		 */
+		INLINE("inline"),
+		/**
+		 * Writes the PlantUML source of every diagram next to where its SVG would go, without layout
+		 */
+		SOURCE_ONLY("source-only"),
+		/**
+		 * Renders only the diagrams whose SVG file is missing
+		 */
+		LAZY("lazy");
+
+		private final String label;
+
+		private Mode(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+
+		/**
+		 * Gets the mode with the given label
+		 * 
+		 * @param label The label of the mode
+		 * @return The mode, or null when no mode has the given label
+		 */
+		static Mode of(String label) {
+			for (Mode mode : values()) {
+				if (mode.label.equals(label)) {
+					return mode;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final Pattern ID_ATTRIBUTE = Pattern.compile("id=\"[^\"]*\"");
+
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+	private final Logger LOGGER = LogManager.getLogger(ClassDiagramRenderer.class);
+
+	private final ExecutorService executor;
+
+	private final Path cacheFolder;
+
+	private final OutputStage outputStage;
+
+	private final Mode mode;
+
+	private final PhaseProfiler profiler;
+
+	private final List<Future<?>> pending = new ArrayList<>();
+
+	private final ConcurrentHashMap<String, CompletableFuture<Path>> rendered = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new renderer
+	 * 
+	 * @param parallelism The maximum number of diagrams rendered at the same time
+	 * @param cacheFolder The folder where rendered diagrams are cached (or null for no cache)
+	 * @param outputStage The stage writing the SVG files
+	 * @param mode The way diagrams are rendered
+	 * @param profiler The profiler measuring the rendering of each diagram
+	 */
+	ClassDiagramRenderer(int parallelism, Path cacheFolder, OutputStage outputStage, Mode mode, PhaseProfiler profiler) {
+		this.executor = Executors.newFixedThreadPool(parallelism);
+		this.cacheFolder = cacheFolder;
+		this.outputStage = outputStage;
+		this.mode = mode;
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Schedules the rendering of the given PlantUML content to an SVG file
+	 * 
+	 * @param path The path of the SVG file
+	 * @param content The PlantUML content of the diagram
+	 * @return The path of the file the diagram is written to
+	 */
+	public synchronized String submit(String path, String content) {
+		if (mode == Mode.SOURCE_ONLY) {
+			final String pumlPath = path.substring(0, path.lastIndexOf('.') + 1) + "puml";
+			pending.add(executor.submit(() -> {
+				outputStage.write(Paths.get(pumlPath), content.getBytes(StandardCharsets.UTF_8));
+				return null;
+			}));
+			return pumlPath;
+		}
+		if (mode == Mode.LAZY && Files.exists(Paths.get(path))) {
+			LOGGER.debug("Keeping existing diagram: " + path);
+			return path;
+		}
+		pending.add(executor.submit(() -> {
+			write(Paths.get(path), hash(content), content);
+			return null;
+		}));
+		return path;
+	}
+
+	/**
+	 * Whether diagrams are written as PlantUML sources rather than rendered, in which case
+	 * documents should include the sources instead of the SVG files
+	 * 
+	 * @return true in source only mode
+	 */
+	public boolean isSourceOnly() {
+		return mode == Mode.SOURCE_ONLY;
+	}
+
+	/**
+	 * Waits until every submitted diagram is rendered
+	 * 
+	 * @throws RuntimeException when one or more diagrams failed to render
+	 */
+	public void awaitAll() {
+		final List<Future<?>> futures;
+		synchronized (this) {
+			futures = new ArrayList<>(pending);
+			pending.clear();
+		}
+		RuntimeException failure = null;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				LOGGER.error("Error rendering diagram : "+e.getCause().getMessage(), e.getCause());
+				if (failure == null) {
+					failure = new RuntimeException("Error rendering diagrams", e.getCause());
+				} else {
+					failure.addSuppressed(e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while rendering diagrams", e);
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Waits up to {@value #SHUTDOWN_TIMEOUT_SECONDS} seconds for the submitted diagrams to be written,
+	 * so none is left half written, then cancels the remaining ones
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				LOGGER.warn("Cancelling the diagrams not written after " + SHUTDOWN_TIMEOUT_SECONDS + " seconds");
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes the SVG of the given diagram to the given file, rendering the diagram only if no
+	 * other file of the run or of the cache has it yet
+	 */
+	private void write(Path file, String hash, String content) throws Exception {
+		final CompletableFuture<Path> future = new CompletableFuture<>();
+		final CompletableFuture<Path> existing = rendered.putIfAbsent(hash, future);
+		if (existing != null) {
+			final Path source;
+			try {
+				source = existing.get();
+			} catch (ExecutionException e) {
+				throw (Exception) e.getCause();
+			}
+			if (!source.equals(file)) {
+				outputStage.write(file, Files.readAllBytes(source));
+			}
+			return;
+		}
+		try {
+			future.complete(writeSvg(file, hash, content));
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the SVG of the given diagram to the given file
+	 * 
+	 * @return The file other files with the same diagram can be copied from
+	 */
+	private Path writeSvg(Path file, String hash, String content) throws IOException {
+		if (cacheFolder == null) {
+			outputStage.write(file, render(file, content));
+			return file;
+		}
+		final Path cachedFile = cacheFolder.resolve(hash + ".svg");
+		if (Files.exists(cachedFile)) {
+			LOGGER.debug("Reusing cached diagram: " + cachedFile);
+		} else {
+			Files.createDirectories(cacheFolder);
+			final Path tempFile = Files.createTempFile(cacheFolder, hash, ".tmp");
+			Files.write(tempFile, render(file, content));
+			try {
+				Files.move(tempFile, cachedFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, cachedFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		outputStage.write(file, Files.readAllBytes(cachedFile));
+		return cachedFile;
+	}
+
+	/**
+	 * Renders the given diagram to SVG, measured as the rendering of the given file
+	 */
+	private byte[] render(Path file, String content) throws IOException {
+		try (PhaseProfiler.Timer timer = profiler.start("render", file.toString())) {
+			final SourceStringReader pumlReader = new SourceStringReader(content, "UTF-8");
+			final ByteArrayOutputStream svg = new ByteArrayOutputStream();
+			pumlReader.outputImage(svg, new FileFormatOption(FileFormat.SVG));
+
+			// remove the id properties from the SVG since they cause conflicts
+			final ByteArrayOutputStream stripped = new ByteArrayOutputStream(svg.size());
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(svg.toByteArray()), StandardCharsets.UTF_8));
+				 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stripped, StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					writer.write(ID_ATTRIBUTE.matcher(line).replaceAll(""));
+					writer.newLine();
+				}
+			}
+			return stripped.toByteArray();
+		}
+	}
+
+	private static String hash(String content) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(Version.versionString().getBytes(StandardCharsets.UTF_8));
+			digest.update(content.getBytes(StandardCharsets.UTF_8));
+			final StringBuilder hash = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hash.append(String.format("%02x", b));
+			}
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
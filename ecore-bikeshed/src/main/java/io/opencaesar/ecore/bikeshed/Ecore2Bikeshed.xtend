@@ -18,15 +18,13 @@
  */
 package io.opencaesar.ecore.bikeshed
 
-import java.nio.file.Files
-import java.nio.file.Paths
+import java.io.IOException
+import java.io.Writer
 import java.util.ArrayList
+import java.util.Collection
+import java.util.HashMap
 import java.util.List
-import java.util.regex.Pattern
-import java.util.stream.Collectors
-import net.sourceforge.plantuml.FileFormat
-import net.sourceforge.plantuml.FileFormatOption
-import net.sourceforge.plantuml.SourceStringReader
+import java.util.Map
 import org.eclipse.emf.ecore.EAttribute
 import org.eclipse.emf.ecore.EClass
 import org.eclipse.emf.ecore.EClassifier
@@ -38,6 +36,7 @@ import org.eclipse.emf.ecore.EReference
 import org.eclipse.emf.ecore.EStructuralFeature
 import org.eclipse.emf.ecore.EcorePackage
 import org.eclipse.emf.ecore.resource.Resource
+import org.eclipse.emf.ecore.resource.ResourceSet
 import org.eclipse.emf.ecore.util.EcoreUtil
 import org.eclipse.emf.ecore.xcore.XAttribute
 import org.eclipse.emf.ecore.xcore.mappings.ToXcoreMapping
@@ -47,31 +46,61 @@ package class Ecore2Bikeshed {
 
 	val Resource inputResource 
 	val String outputPath
+	val Map<EClass, List<EClass>> subClassIndex
+	val ClassDiagramRenderer renderer
+	val List<String> diagramPaths = new ArrayList
+	var BikeshedIndex index
 
-	static val BIKESHED_HEADINGS = "https://tabatkins.github.io/bikeshed/headings"
-	static val BIKESHED = "https://tabatkins.github.io/bikeshed"
 	static enum Annotation {
 		heading
 	}
 		
-	new(Resource inputResource, String outputPath) {
+	new(Resource inputResource, String outputPath, Map<EClass, List<EClass>> subClassIndex, ClassDiagramRenderer renderer) {
 		this.inputResource = inputResource
 		this.outputPath = outputPath
+		this.subClassIndex = subClassIndex
+		this.renderer = renderer
 	}
 	
-	def run() {
+	static def Map<EClass, List<EClass>> indexSubClasses(ResourceSet resourceSet) {
+		indexSubClasses(resourceSet.resources)
+	}
+	
+	static def Map<EClass, List<EClass>> indexSubClasses(Collection<Resource> resources) {
+		val subClasses = new HashMap<EClass, List<EClass>>
+		resources.toList.map[allContents.filter(EClass).toList].flatten.toList.forEach[subClass|
+			subClass.ESuperTypes.forEach[superClass|
+				subClasses.computeIfAbsent(superClass)[new ArrayList<EClass>].add(subClass)
+			]
+		]
+		subClasses
+	}
+	
+	def void run(Writer writer) throws IOException {
 		val ePackage = inputResource.contents.filter(EPackage).head
-		ePackage.generate.toString
+		index = new BikeshedIndex(ePackage)
+		ePackage.generate(writer)
+	}
+	
+	def getDiagramPaths() {
+		diagramPaths
 	}
 	
-	protected def generate(EPackage ePackage) '''
+	protected def void generate(EPackage ePackage, Writer writer) throws IOException {
+		writer.append(ePackage.generateHeader)
+		for (heading : ePackage.headings) {
+			writer.append(ePackage.generateHeading(heading))
+		}
+	}
+	
+	protected def generateHeader(EPackage ePackage) '''
 		# «ePackage.heading» # {#«ePackage.heading.replaceAll(' ', '')»}
 		«ePackage.documentation»
 		
-		«val headings = ePackage.headings»
-		«headings.add(headings.length, null)»
-		«FOR heading : headings»
-		«val classifiers = ePackage.EClassifiers.filter[c|c.heading == heading].sortBy[name]»
+	'''
+	
+	protected def generateHeading(EPackage ePackage, String heading) '''
+		«val classifiers = index.getClassifiers(heading)»
 		«IF !classifiers.empty»
 		## «heading?.replaceAll("([^_])([A-Z])", "$1 $2")?:"Other"» ## {#«heading?:"Other"»}
 		«generateClassDiagram(heading, ePackage, classifiers)»
@@ -94,7 +123,7 @@ package class Ecore2Bikeshed {
 				</tr>
 			«ENDIF»
 			
-			«val subClasses = eClassifier.eResource.resourceSet.allContents.filter(EClass).filter[ESuperTypes.contains(eClassifier)].toList»
+			«val subClasses = subClassIndex.getOrDefault(eClassifier, emptyList)»
 			«IF !subClasses.empty»
 				<tr>
 					<th>Sub classes</th>
@@ -146,7 +175,6 @@ package class Ecore2Bikeshed {
 		«ENDFOR»
 		«ENDIF»
 		
-		«ENDFOR»
 	'''
 	
 	protected def String qualifiedName(ENamedElement element) {
@@ -155,7 +183,7 @@ package class Ecore2Bikeshed {
 	}
 	
 	protected  def String documentation(ENamedElement element) {
-		element.EAnnotations.findFirst[source == "http://www.eclipse.org/emf/2002/GenModel"]?.details?.get("documentation")?:""
+		index.getDocumentation(element)
 	}
 	
 	protected def String map(String type) {
@@ -198,8 +226,8 @@ package class Ecore2Bikeshed {
 	
 	protected def String generateClassDiagram(String group, EPackage ePackage, List<EClassifier> classifiers) '''
 		«generateClassDiagram('''«outputPath»/images/«ePackage.name»-«group».svg''', generatePlatUMLDiagram(classifiers))»
-		<pre class=include>
-		path: images/«ePackage.name»-«group».svg
+		<pre class=«IF renderer.sourceOnly»include-code«ELSE»include«ENDIF»>
+		path: images/«ePackage.name»-«group».«IF renderer.sourceOnly»puml«ELSE»svg«ENDIF»
 		</pre>
 	'''
 	
@@ -254,31 +282,13 @@ package class Ecore2Bikeshed {
 		}
 	}
 	protected def void generateClassDiagram(String path, String content) {
-		val pumlReader = new SourceStringReader(content, "UTF-8")
-      	val svgFile = Paths.get(path)
-      	svgFile.getParent.toFile.mkdirs()
-      	val os = Files.newOutputStream(svgFile)
-      	pumlReader.outputImage(os, new FileFormatOption(FileFormat.SVG))
-      	
-      	// remove the id properties from the SVG since they cause conflicts
-        val p = Pattern.compile('(id="[^"]*")')
-        val lines = Files.lines(svgFile);
-        val replaced = lines.map[line|
-        	var varLine = line
-	        val m = p.matcher(line)
-	        while (m.find) {
-	        	varLine = varLine.replaceAll(m.group(1), '')
-	        }
-	        varLine
-        ].collect(Collectors.toList())
-        Files.write(svgFile, replaced)
-        lines.close()
+		diagramPaths += renderer.submit(path, content)
 	}
 	protected def getHeadings(EPackage ePackage) {
-		new ArrayList(ePackage.EAnnotations.filter[source == BIKESHED_HEADINGS].flatMap[details].map[key].toList)
+		index.headings
 	}
 	protected def getHeading(ENamedElement element) {
-		element.getAnnotationValue(Annotation.heading,element.name)
+		index.getHeading(element)
 	}
 	
 	protected def isAnnotationSet(EModelElement element, Annotation annotation) {
@@ -288,6 +298,6 @@ package class Ecore2Bikeshed {
 		getAnnotationValue(element, annotation) ?: defaultValue
 	}
 	protected def getAnnotationValue(EModelElement element, Annotation annotation) {
-		element.EAnnotations.findFirst[BIKESHED == source]?.details?.get(annotation.toString)
+		index.getAnnotationValue(element, annotation.toString)
 	}
 }
\ No newline at end of file
@@ -20,10 +20,23 @@ package io.opencaesar.ecore.bikeshed;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import org.apache.log4j.Appender;
 import org.apache.log4j.AppenderSkeleton;
@@ -31,15 +44,28 @@ import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.xcore.XcoreStandaloneSetup;
 
 import com.beust.jcommander.IParameterValidator;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.validators.PositiveInteger;
+import com.google.inject.Injector;
+
+import io.opencaesar.ecore.common.AppOptions;
+import io.opencaesar.ecore.common.Daemon;
+import io.opencaesar.ecore.common.InputFileCollector;
+import io.opencaesar.ecore.common.ModelCache;
+import io.opencaesar.ecore.common.OutputStage;
+import io.opencaesar.ecore.common.ParallelResourceLoader;
+import io.opencaesar.ecore.common.PhaseProfiler;
 
 /**
  * This class implements the Ecore to Bikeshed transformation
@@ -49,48 +75,160 @@ import com.beust.jcommander.ParameterException;
 @SuppressWarnings("all")
 public class Ecore2BikeshedApp {
 
+	/**
+	 * The name of the tool, which names its daemon token file
+	 */
+	static final String TOOL = "ecore2bikeshed";
+
+	/**
+	 * The options whose values are paths, resolved by the client before forwarding them to a daemon
+	 */
+	private static final List<String> PATH_OPTIONS = Arrays.asList("--input", "-i", "--output", "-o", "--changed", "--removed", "--cache", "--model-cache", "--profile-report");
+
 	@Parameter(
 		names = { "--input", "-i" },
-		description = "Path of Ecore input folder (Required)",
+		description = "Path of Ecore input folder (Required, unless --daemon or --connect is used)",
 		validateWith = Ecore2BikeshedApp.InputFolderPath.class,
-		required = true,
 		order = 1)
 	private String inputFolderPath = null;
 
 	@Parameter(
 		names = { "--output", "-o" },
-		description = "Location of the Bikeshed output folder (Required)",
+		description = "Location of the Bikeshed output folder (Required, unless --daemon or --connect is used)",
 		validateWith = Ecore2BikeshedApp.OutputFolderPath.class,
-		required = true,
 		order = 2)
 	private String outputFolderPath = ".";
 
+	@Parameter(
+		names = { "--include" },
+		description = "Glob pattern of the input files to include, relative to the input folder (Optional, repeatable, defaults to **.xcore and **.genmodel)",
+		order = 3)
+	private List<String> includes = null;
+
+	@Parameter(
+		names = { "--exclude" },
+		description = "Glob pattern of the input files and folders to exclude, relative to the input folder (Optional, repeatable)",
+		order = 4)
+	private List<String> excludes = null;
+
+	@Parameter(
+		names = { "--parallelism" },
+		description = "Maximum number of diagrams rendered and files saved in parallel (Optional, defaults to the number of processors)",
+		validateWith = PositiveInteger.class,
+		order = 5)
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	@Parameter(
+		names = { "--threads" },
+		description = "Maximum number of input files parsed in parallel (Optional, defaults to 1)",
+		validateWith = PositiveInteger.class,
+		order = 6)
+	private int threads = 1;
+
+	@Parameter(
+		names = { "--cache" },
+		description = "Location of a folder caching rendered diagrams across runs (Optional)",
+		validateWith = Ecore2BikeshedApp.OutputFolderPath.class,
+		order = 7)
+	private String cacheFolderPath = null;
+
+	@Parameter(
+		names = { "--model-cache" },
+		description = "Location of a folder caching loaded Xcore models across runs (Optional)",
+		validateWith = Ecore2BikeshedApp.OutputFolderPath.class,
+		order = 8)
+	private String modelCacheFolderPath = null;
+
+	@Parameter(
+		names = { "--diagrams" },
+		description = "How class diagrams are rendered: inline, source-only or lazy (Optional, defaults to inline)",
+		validateWith = Ecore2BikeshedApp.DiagramMode.class,
+		order = 9)
+	private String diagramMode = "inline";
+
+	@Parameter(
+		names = { "--incremental" },
+		description = "Regenerates only the outputs of inputs that changed since the last run (Optional)",
+		order = 10)
+	private boolean incremental;
+
+	@Parameter(
+		names = { "--changed" },
+		description = "Path of an input file that was added or changed since the last run, which makes --incremental use the given changes instead of hashing the inputs (Optional, repeatable)",
+		order = 11)
+	private List<String> changedPaths = null;
+
+	@Parameter(
+		names = { "--removed" },
+		description = "Path of an input file that was removed since the last run, which makes --incremental use the given changes instead of hashing the inputs (Optional, repeatable)",
+		order = 12)
+	private List<String> removedPaths = null;
+
+	@Parameter(
+		names = { "--profile" },
+		description = "Logs the wall time, CPU time and allocated bytes of each phase and input file (Optional)",
+		order = 13)
+	private boolean profile;
+
+	@Parameter(
+		names = { "--profile-report" },
+		description = "Location of a JSON file to write the profile to, which implies --profile (Optional)",
+		order = 14)
+	private String profileReportPath = null;
+
+	@Parameter(
+		names = { "--daemon" },
+		description = "Starts a daemon that serves requests on the given loopback port, authenticated by a token written to ~/.ecore-tools (Optional)",
+		validateWith = PositiveInteger.class,
+		order = 15)
+	private Integer daemonPort = null;
+
+	@Parameter(
+		names = { "--connect" },
+		description = "Forwards the request to a daemon listening on the given loopback port (Optional)",
+		validateWith = PositiveInteger.class,
+		order = 16)
+	private Integer connectPort = null;
+
 	@Parameter(
 		names = { "--debug", "-d" },
 		description = "Shows debug logging statements",
-		order = 3)
+		order = 17)
 	private boolean debug;
 
 	@Parameter(
 		names = { "--help", "-h" },
 		description = "Displays summary of options",
 		help = true,
-		order = 4)
+		order = 18)
 	private boolean help;
 
 	@Parameter(
 		names = { "--version", "-v" },
 		description = "Displays app version",
 		help = true,
-		order = 5)
+		order = 19)
 	private boolean version;
 
 	private final Logger LOGGER = LogManager.getLogger(Ecore2BikeshedApp.class);
 
+	private static Injector injector;
+
+	private ResourceSet inputResourceSet = null;
+
 	/**
 	 * Default constructor
 	 */
 	public Ecore2BikeshedApp() {}
+
+	/**
+	 * Creates an app that loads its inputs in the given resource set
+	 * 
+	 * @param inputResourceSet The resource set kept by the daemon across requests
+	 */
+	Ecore2BikeshedApp(ResourceSet inputResourceSet) {
+		this.inputResourceSet = inputResourceSet;
+	}
 	
 	/**
 	 * Main method
@@ -113,15 +251,38 @@ public class Ecore2BikeshedApp {
 			final Appender appender = LogManager.getRootLogger().getAppender("stdout");
 			((AppenderSkeleton) appender).setThreshold(Level.DEBUG);
 		}
-		if (app.inputFolderPath.endsWith(File.separator)) {
-			app.inputFolderPath = app.inputFolderPath.substring(0, app.inputFolderPath.length()-1);
+		if (app.daemonPort != null) {
+			new Daemon(TOOL, app.daemonPort, Ecore2BikeshedApp::setup, (resourceSet, requestArgs) -> {
+				final Ecore2BikeshedApp request = new Ecore2BikeshedApp(resourceSet);
+				final JCommander requestBuilder = JCommander.newBuilder().addObject(request).build();
+				requestBuilder.parse(requestArgs);
+				request.prepare(requestBuilder);
+				request.run();
+			}).run();
+			return;
 		}
-		if (app.outputFolderPath.endsWith(File.separator)) {
-			app.outputFolderPath = app.outputFolderPath.substring(0, app.outputFolderPath.length()-1);
+		if (app.connectPort != null) {
+			Daemon.forward(TOOL, app.connectPort, PATH_OPTIONS, args);
+			return;
 		}
+		app.prepare(builder);
 		app.run();
 	}
 
+	/**
+	 * Checks the required options and normalizes the folder paths of a run
+	 * 
+	 * @param builder The JCommander that parsed the options of the run
+	 */
+	private void prepare(JCommander builder) {
+		AppOptions.require(builder, "--input", "--output");
+		inputFolderPath = AppOptions.normalizeFolderPath(inputFolderPath);
+		outputFolderPath = AppOptions.normalizeFolderPath(outputFolderPath);
+		if ((changedPaths != null || removedPaths != null) && !incremental) {
+			throw new ParameterException("The --changed and --removed options require --incremental");
+		}
+	}
+
 	/**
 	 * Run method
 	 */
@@ -132,73 +293,301 @@ public class Ecore2BikeshedApp {
 		LOGGER.info("=================================================================");
 		LOGGER.info("Input Folder= " + inputFolderPath);
 		LOGGER.info("Output Folder= " + outputFolderPath);
+		if (cacheFolderPath != null) {
+			LOGGER.info("Cache Folder= " + cacheFolderPath);
+		}
+		if (modelCacheFolderPath != null) {
+			LOGGER.info("Model Cache Folder= " + modelCacheFolderPath);
+		}
+		LOGGER.info("Diagrams= " + diagramMode);
 
+		final PhaseProfiler profiler = new PhaseProfiler(profile || profileReportPath != null);
 		final File inputFolder = new File(this.inputFolderPath);
-		final Collection<File> inputFiles = this.collectInputFiles(inputFolder);
-		
-		XcoreStandaloneSetup.doSetup();
-		final ResourceSet inputResourceSet = new ResourceSetImpl();
+		final File outputFolder = new File(this.outputFolderPath);
+		final Collection<File> inputFiles;
+		try (PhaseProfiler.Timer timer = profiler.start("discover")) {
+			inputFiles = new InputFileCollector(includes, excludes).collect(inputFolder);
+		}
 		
-		final HashMap<File, String> outputFiles = new HashMap<>();
+		try (PhaseProfiler.Timer timer = profiler.start("setup")) {
+			setup();
+		}
+		final ResourceSet inputResourceSet = (this.inputResourceSet != null) ? this.inputResourceSet : new ResourceSetImpl();
+		final ModelCache modelCache = (modelCacheFolderPath != null) ? new ModelCache(Paths.get(modelCacheFolderPath), getAppVersion()) : null;
+		final ParallelResourceLoader loader = new ParallelResourceLoader(threads, modelCache, profiler);
 		
+		final LinkedHashMap<String, File> inputFilesByPath = new LinkedHashMap<>();
+		final HashMap<String, String> inputHashes = new HashMap<>();
 		for (final File inputFile : inputFiles) {
-			final URI inputURI = URI.createFileURI(inputFile.getAbsolutePath());
-			final Resource inputResource = inputResourceSet.getResource(inputURI, true);
-			if ((inputResource != null)) {
-				this.LOGGER.info(("Reading: " + inputURI));
-				String relativePath = this.outputFolderPath + File.separator + inputFolder.toURI().relativize(inputFile.toURI()).getPath();
+			inputFilesByPath.put(inputFolder.toURI().relativize(inputFile.toURI()).getPath(), inputFile);
+		}
+		
+		final LinkedHashMap<File, Resource> inputResources = new LinkedHashMap<>();
+		final LinkedHashSet<String> generatedInputs = new LinkedHashSet<>(inputFilesByPath.keySet());
+		final BikeshedManifest manifest = incremental ? loadManifest(outputFolder) : null;
+		if (incremental) {
+			// the changes are either given (e.g., by Gradle) or found by hashing every input
+			final boolean changesGiven = changedPaths != null || removedPaths != null;
+			if (!changesGiven) {
+				try (PhaseProfiler.Timer timer = profiler.start("hash")) {
+					for (final String input : inputFilesByPath.keySet()) {
+						inputHashes.put(input, hash(inputFilesByPath.get(input)));
+					}
+				}
+			}
+			
+			// inputs that were removed or changed since the last run
+			final LinkedHashSet<String> removedInputs = new LinkedHashSet<>(manifest.getInputs());
+			removedInputs.removeAll(inputFilesByPath.keySet());
+			if (removedPaths != null) {
+				for (final String removedPath : removedPaths) {
+					final String input = getInput(inputFolder, removedPath);
+					if (manifest.getInputs().contains(input) && !inputFilesByPath.containsKey(input)) {
+						removedInputs.add(input);
+					}
+				}
+			}
+			// all the inputs changed when the diagrams are written differently
+			final boolean diagramsChanged = !diagramMode.equals(manifest.getDiagrams());
+			final LinkedHashSet<String> changedInputs = new LinkedHashSet<>();
+			if (changesGiven) {
+				final Set<String> givenInputs = new HashSet<>();
+				if (changedPaths != null) {
+					for (final String changedPath : changedPaths) {
+						givenInputs.add(getInput(inputFolder, changedPath));
+					}
+				}
+				for (final String input : inputFilesByPath.keySet()) {
+					if (diagramsChanged || givenInputs.contains(input) || manifest.getHash(input) == null) {
+						changedInputs.add(input);
+					}
+				}
+			} else {
+				inputHashes.forEach((input, hash) -> {
+					if (diagramsChanged || !hash.equals(manifest.getHash(input))) {
+						changedInputs.add(input);
+					}
+				});
+			}
+			final LinkedHashSet<String> affectedInputs = new LinkedHashSet<>(changedInputs);
+			affectedInputs.addAll(removedInputs);
+			
+			for (final String input : removedInputs) {
+				deleteOutputs(outputFolder, manifest, input, Collections.emptySet());
+			}
+			
+			// regenerate the changed inputs, the inputs that depend on them (for their types), 
+			// and the inputs they depended on (for their sub classes)
+			generatedInputs.clear();
+			generatedInputs.addAll(changedInputs);
+			generatedInputs.addAll(manifest.getDependents(affectedInputs));
+			affectedInputs.forEach(input -> generatedInputs.addAll(manifest.getDependencies(input)));
+			
+			// the changed inputs may now depend on other inputs
+			loadInputs(inputResourceSet, changedInputs, inputFilesByPath, inputResources, loader);
+			for (final String input : changedInputs) {
+				generatedInputs.addAll(getDependencies(inputResources.get(inputFilesByPath.get(input)), inputFilesByPath));
+			}
+			generatedInputs.retainAll(inputFilesByPath.keySet());
+			
+			LOGGER.info("Unchanged inputs= " + (inputFilesByPath.size() - generatedInputs.size()));
+			
+			removedInputs.forEach(manifest::remove);
+		}
+		
+		// load the generated inputs and the inputs that depend on them (for the sub class index)
+		final LinkedHashSet<String> loadedInputs = new LinkedHashSet<>(generatedInputs);
+		if (incremental) {
+			loadedInputs.addAll(manifest.getDependents(generatedInputs));
+		}
+		loadedInputs.retainAll(inputFilesByPath.keySet());
+		loadInputs(inputResourceSet, loadedInputs, inputFilesByPath, inputResources, loader);
+		
+		final Map<EClass, List<EClass>> subClassIndex;
+		try (PhaseProfiler.Timer timer = profiler.start("index")) {
+			// only index the models of this run, since the daemon's resource set may hold others
+			subClassIndex = Ecore2Bikeshed.indexSubClasses(getReferencedResources(inputResources.values()));
+		}
+		
+		final HashMap<String, Set<String>> inputOutputs = new HashMap<>();
+		
+		try (final OutputStage outputStage = new OutputStage(parallelism, profiler);
+			 final ClassDiagramRenderer renderer = new ClassDiagramRenderer(parallelism, cacheFolderPath != null ? Paths.get(cacheFolderPath) : null, outputStage, ClassDiagramRenderer.Mode.of(diagramMode), profiler)) {
+			for (final String input : generatedInputs) {
+				final File inputFile = inputFilesByPath.get(input);
+				final Resource inputResource = inputResources.get(inputFile);
+				if (inputResource == null) {
+					continue;
+				}
+				String relativePath = this.outputFolderPath + File.separator + input;
 				final File outputFile = new File(relativePath.substring(0, relativePath.lastIndexOf(".") + 1) + "md");
-				outputFiles.put(outputFile, new Ecore2Bikeshed(inputResource, this.outputFolderPath).run());
+				final Ecore2Bikeshed generator = new Ecore2Bikeshed(inputResource, this.outputFolderPath, subClassIndex, renderer);
+				try (PhaseProfiler.Timer timer = profiler.start("generate", input)) {
+					saveOutputFile(outputFile, generator, outputStage);
+				}
+				
+				final Set<String> outputs = new TreeSet<>();
+				outputs.add(outputFolder.toURI().relativize(outputFile.toURI()).getPath());
+				for (final String diagramPath : generator.getDiagramPaths()) {
+					outputs.add(outputFolder.toURI().relativize(new File(diagramPath).toURI()).getPath());
+				}
+				inputOutputs.put(input, outputs);
+			}
+			
+			// the output stage is awaited even when diagrams fail, so the files already staged are written and counted
+			RuntimeException failure = null;
+			try {
+				renderer.awaitAll();
+			} catch (RuntimeException e) {
+				failure = e;
+				throw e;
+			} finally {
+				try {
+					outputStage.awaitAll();
+				} catch (RuntimeException e) {
+					if (failure == null) {
+						throw e;
+					}
+					failure.addSuppressed(e);
+				}
 			}
 		}
 		
-		outputFiles.forEach((File outputFile, String result) -> {
-			BufferedWriter out = null;
+		if (incremental) {
+			try (PhaseProfiler.Timer timer = profiler.start("hash")) {
+				for (final String input : inputOutputs.keySet()) {
+					inputHashes.computeIfAbsent(input, i -> hash(inputFilesByPath.get(i)));
+				}
+			}
+			inputOutputs.forEach((input, outputs) -> {
+				deleteOutputs(outputFolder, manifest, input, outputs);
+				final Resource inputResource = inputResources.get(inputFilesByPath.get(input));
+				manifest.put(input, inputHashes.get(input), getDependencies(inputResource, inputFilesByPath), outputs);
+			});
 			try {
-				outputFile.getParentFile().mkdirs();
-				final String filePath = outputFile.getCanonicalPath();
-				out = new BufferedWriter(new FileWriter(filePath));
-				this.LOGGER.info(("Saving: " + filePath));
-				out.write(result.toString());
-			} catch (final Exception e) {
-			    System.out.println(e);
-			} 
+				manifest.save();
+			} catch (IOException e) {
+				throw new RuntimeException("Error saving manifest : " + e.getMessage(), e);
+			}
+		}
+		
+		profiler.report();
+		if (profileReportPath != null) {
 			try {
-				if (out !=null) {
-					out.close();
-				}
-			} catch(Exception e) {
-			    System.out.println(e);
+				profiler.writeJson(new File(profileReportPath));
+			} catch (IOException e) {
+				LOGGER.error("Error saving "+profileReportPath+" : "+e.getMessage(), e);
 			}
-		});
+		}
 		
 		this.LOGGER.info("=================================================================");
 		this.LOGGER.info("                          E N D");
 		this.LOGGER.info("=================================================================");
 	}
 
-	private Collection<File> collectInputFiles(final File directory) {
-		final ArrayList<File> files = new ArrayList<File>();
-		for (final File file : directory.listFiles()) {
-			if (file.isFile()) {
-				final String ext = this.getFileExtension(file);
-				if ((ext.equals("genmodel") || ext.equals("xcore"))) {
-					files.add(file);
+	private void saveOutputFile(final File outputFile, final Ecore2Bikeshed generator, final OutputStage outputStage) {
+		final Path outputPath = outputFile.toPath();
+		Path tempFile = null;
+		boolean submitted = false;
+		try {
+			tempFile = outputStage.createTempFile(outputPath);
+			try (final BufferedWriter out = Files.newBufferedWriter(tempFile)) {
+				generator.run(out);
+			}
+			outputStage.submit(outputPath, tempFile);
+			submitted = true;
+		} catch (final IOException e) {
+			outputStage.fail(outputPath, e);
+		} finally {
+			// the generator may also fail with a runtime exception or an error
+			if (!submitted && tempFile != null) {
+				tempFile.toFile().delete();
+			}
+		}
+	}
+
+	private void loadInputs(final ResourceSet inputResourceSet, final Collection<String> inputs, final Map<String, File> inputFilesByPath, final Map<File, Resource> inputResources, final ParallelResourceLoader loader) {
+		final List<File> inputFiles = inputs.stream()
+				.map(inputFilesByPath::get)
+				.filter(inputFile -> !inputResources.containsKey(inputFile))
+				.collect(Collectors.toList());
+		inputResources.putAll(loader.load(inputResourceSet, inputFiles));
+	}
+
+	private Set<String> getDependencies(final Resource inputResource, final Map<String, File> inputFilesByPath) {
+		final Set<String> dependencies = new TreeSet<>();
+		if (inputResource == null) {
+			return dependencies;
+		}
+		final Set<URI> referencedURIs = EcoreUtil.ExternalCrossReferencer.find(inputResource).keySet().stream()
+				.map(EObject::eResource)
+				.filter(r -> r != null && r != inputResource)
+				.map(Resource::getURI)
+				.collect(Collectors.toSet());
+		inputFilesByPath.forEach((input, inputFile) -> {
+			if (referencedURIs.contains(URI.createFileURI(inputFile.getAbsolutePath()))) {
+				dependencies.add(input);
+			}
+		});
+		return dependencies;
+	}
+
+	private String getInput(final File inputFolder, final String path) {
+		return inputFolder.toURI().relativize(new File(path).getAbsoluteFile().toURI()).getPath();
+	}
+
+	private Collection<Resource> getReferencedResources(final Collection<Resource> inputResources) {
+		final LinkedHashSet<Resource> resources = new LinkedHashSet<>(inputResources);
+		final ArrayDeque<Resource> pending = new ArrayDeque<>(inputResources);
+		while (!pending.isEmpty()) {
+			for (final EObject referenced : EcoreUtil.ExternalCrossReferencer.find(pending.pop()).keySet()) {
+				final Resource resource = referenced.eResource();
+				if (resource != null && resources.add(resource)) {
+					pending.add(resource);
 				}
-			} else if (file.isDirectory()) {
-				files.addAll(this.collectInputFiles(file));
 			}
 		}
-		return files;
+		return resources;
+	}
+
+	private void deleteOutputs(final File outputFolder, final BikeshedManifest manifest, final String input, final Set<String> keptOutputs) {
+		for (final String output : manifest.getOutputs(input)) {
+			if (!keptOutputs.contains(output) && !manifest.isOutputOfOtherInput(output, input)) {
+				final File outputFile = new File(outputFolder, output);
+				if (outputFile.delete()) {
+					this.LOGGER.info(("Deleting: " + outputFile));
+				}
+			}
+		}
+	}
+
+	private BikeshedManifest loadManifest(final File outputFolder) {
+		try {
+			return BikeshedManifest.load(outputFolder, getAppVersion(), diagramMode);
+		} catch (IOException e) {
+			throw new RuntimeException("Error loading manifest : " + e.getMessage(), e);
+		}
+	}
+
+	private String hash(final File inputFile) {
+		try {
+			return BikeshedManifest.hash(inputFile);
+		} catch (IOException e) {
+			throw new RuntimeException("Error reading " + inputFile + " : " + e.getMessage(), e);
+		}
 	}
 
-	private String getFileExtension(final File file) {
-		final String fileName = file.getName();
-		if (fileName.lastIndexOf(".") != (-1)) {
-			return fileName.substring(fileName.lastIndexOf(".") + 1);
-		} else {
-			return "";
+	/**
+	 * Sets up Xcore once per class loader, so that repeated runs in the same JVM
+	 * (e.g., a Gradle worker in a warm daemon) reuse the same injector
+	 * 
+	 * @return The Xcore injector
+	 */
+	public static synchronized Injector setup() {
+		if (injector == null) {
+			injector = new XcoreStandaloneSetup().createInjectorAndDoEMFRegistration();
 		}
+		return injector;
 	}
 
 	/**
@@ -251,4 +640,22 @@ public class Ecore2BikeshedApp {
 			}
 		}
 	}
+
+	/**
+	 * Validates the Diagram Mode param
+	 */
+	public static class DiagramMode implements IParameterValidator {
+		/**
+		 * Default constructor
+		 */
+		public DiagramMode() {
+		}
+
+		@Override
+		public void validate(final String name, final String value) throws ParameterException {
+			if (ClassDiagramRenderer.Mode.of(value) == null) {
+				throw new ParameterException("Parameter "+name+" should be one of inline, source-only or lazy: "+value);
+			}
+		}
+	}
 }
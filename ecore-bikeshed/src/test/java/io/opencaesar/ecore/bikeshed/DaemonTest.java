@@ -0,0 +1,155 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.opencaesar.ecore.common.Daemon;
+
+/**
+ * Tests that a daemon serving requests over different input folders writes the same output
+ * as cold runs, even though its resource set keeps the models of earlier requests
+ */
+public class DaemonTest {
+
+	private static final long STARTUP_TIMEOUT = 60_000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String userHome;
+
+	@Before
+	public void setUserHome() throws IOException {
+		// keep the daemon token file out of the real user home
+		userHome = System.getProperty("user.home");
+		System.setProperty("user.home", folder.newFolder("home").getPath());
+	}
+
+	@After
+	public void restoreUserHome() {
+		System.setProperty("user.home", userHome);
+	}
+
+	@Test
+	public void daemonOutputEqualsColdOutput() throws Exception {
+		final File models = folder.newFolder("models");
+		TestFiles.write(models, "core/base.xcore",
+			"package base\n" +
+			"\n" +
+			"abstract class Element {\n" +
+			"\tString name\n" +
+			"}\n");
+		TestFiles.write(models, "extension/derived.xcore",
+			"package derived\n" +
+			"\n" +
+			"import base.Element\n" +
+			"\n" +
+			"class Part extends Element {\n" +
+			"\tint count\n" +
+			"}\n");
+		final File core = new File(models, "core");
+
+		final Map<String, String> coldModels = generate(models, null);
+		final Map<String, String> coldCore = generate(core, null);
+		// Part is a sub class of Element only when the extension is among the inputs
+		assertTrue(coldModels.get("core" + File.separator + "base.md").contains("[=Part=]"));
+		assertFalse(coldCore.get("base.md").contains("[=Part=]"));
+
+		final int port = startDaemon();
+		assertEquals("all models", coldModels, generate(models, port));
+		assertEquals("core models after all models", coldCore, generate(core, port));
+	}
+
+	@Test
+	public void daemonOutputReflectsEditedInput() throws Exception {
+		final File models = folder.newFolder("models");
+		final File base = new File(models, "base.xcore");
+		TestFiles.write(models, "base.xcore",
+			"package base\n" +
+			"\n" +
+			"class Element {\n" +
+			"\tString name\n" +
+			"}\n");
+
+		final int port = startDaemon();
+		final Map<String, String> before = generate(models, port);
+		assertFalse(before.get("base.md").contains("description"));
+
+		final long timeStamp = base.lastModified();
+		TestFiles.write(models, "base.xcore",
+			"package base\n" +
+			"\n" +
+			"class Element {\n" +
+			"\tString name\n" +
+			"\tString description\n" +
+			"}\n");
+		// the file system may keep time stamps to the second only
+		assertTrue(base.setLastModified(timeStamp + 2_000));
+
+		final Map<String, String> after = generate(models, port);
+		assertTrue(after.get("base.md").contains("description"));
+		assertEquals(generate(models, null), after);
+	}
+
+	private Map<String, String> generate(File input, Integer port) throws IOException {
+		final File output = folder.newFolder();
+		if (port != null) {
+			Ecore2BikeshedApp.main("--connect", port.toString(), "-i", input.getPath(), "-o", output.getPath(), "--diagrams", "source-only");
+		} else {
+			Ecore2BikeshedApp.main("-i", input.getPath(), "-o", output.getPath(), "--diagrams", "source-only");
+		}
+		return TestFiles.read(output, ".md", ".puml");
+	}
+
+	/**
+	 * Starts a daemon on a free port, and waits until it has written its token file
+	 */
+	private static int startDaemon() throws IOException, InterruptedException {
+		final int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		final Thread daemon = new Thread(() -> Ecore2BikeshedApp.main("--daemon", String.valueOf(port)), "ecore2bikeshed-daemon");
+		daemon.setDaemon(true);
+		daemon.start();
+		final Path tokenFile = Daemon.getTokenFile(Ecore2BikeshedApp.TOOL, port);
+		final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+		while (!Files.exists(tokenFile)) {
+			assertTrue("The daemon did not start", daemon.isAlive() && System.currentTimeMillis() < deadline);
+			Thread.sleep(100);
+		}
+		return port;
+	}
+}
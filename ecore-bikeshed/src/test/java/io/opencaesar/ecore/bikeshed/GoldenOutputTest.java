@@ -0,0 +1,192 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAnnotation;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EEnumLiteral;
+import org.eclipse.emf.ecore.EModelElement;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.ETypedElement;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.opencaesar.ecore.common.OutputStage;
+import io.opencaesar.ecore.common.PhaseProfiler;
+
+/**
+ * Tests that the markdown of a package is byte for byte the one written by the generator
+ * before its output was streamed and its diagrams rendered in parallel
+ * 
+ * The expected file, shapes.md, was written by that generator from the package below.
+ */
+public class GoldenOutputTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void outputEqualsGoldenFile() throws IOException {
+		final File output = folder.newFolder("output");
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		final Resource resource = createResource(resourceSet);
+
+		final Path file = output.toPath().resolve("shapes.md");
+		final PhaseProfiler profiler = new PhaseProfiler(false);
+		try (final OutputStage outputStage = new OutputStage(1, profiler);
+			 final ClassDiagramRenderer renderer = new ClassDiagramRenderer(1, null, outputStage, ClassDiagramRenderer.Mode.INLINE, profiler)) {
+			final Ecore2Bikeshed generator = new Ecore2Bikeshed(resource, output.getPath(), Ecore2Bikeshed.indexSubClasses(resourceSet), renderer);
+			try (final Writer out = Files.newBufferedWriter(file)) {
+				generator.run(out);
+			}
+			renderer.awaitAll();
+			outputStage.awaitAll();
+		}
+
+		final byte[] expected;
+		try (InputStream in = GoldenOutputTest.class.getResourceAsStream("shapes.md")) {
+			expected = in.readAllBytes();
+		}
+		final byte[] actual = Files.readAllBytes(file);
+		assertEquals(new String(expected, StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+		assertArrayEquals(expected, actual);
+	}
+
+	/**
+	 * Creates a package with two declared headings holding an abstract class, its sub classes,
+	 * an enum and a class referring to them, and a class of no declared heading, which the document leaves out
+	 */
+	private static Resource createResource(ResourceSet resourceSet) {
+		final EcoreFactory factory = EcoreFactory.eINSTANCE;
+		final EPackage ePackage = factory.createEPackage();
+		ePackage.setName("shapes");
+		ePackage.setNsPrefix("shapes");
+		ePackage.setNsURI("http://opencaesar.io/test/shapes");
+		annotate(ePackage, BikeshedIndex.GENMODEL, "documentation", "Shapes drawn on a canvas");
+		annotate(ePackage, BikeshedIndex.BIKESHED_HEADINGS, "Geometry", "");
+		annotate(ePackage, BikeshedIndex.BIKESHED_HEADINGS, "ColorModel", "");
+
+		final EEnum color = factory.createEEnum();
+		color.setName("Color");
+		annotate(color, BikeshedIndex.GENMODEL, "documentation", "A color of a shape");
+		annotate(color, BikeshedIndex.BIKESHED, BikeshedIndex.HEADING, "ColorModel");
+		for (String name : new String[] { "RED", "GREEN", "BLUE" }) {
+			final EEnumLiteral literal = factory.createEEnumLiteral();
+			literal.setName(name);
+			literal.setValue(color.getELiterals().size());
+			color.getELiterals().add(literal);
+		}
+		annotate(color.getEEnumLiteral("RED"), BikeshedIndex.GENMODEL, "documentation", "The color of fire");
+
+		final EClass shape = createClass(ePackage, "Shape", "Geometry", "A shape of the canvas");
+		shape.setAbstract(true);
+		addAttribute(shape, "name", EcorePackage.Literals.ESTRING, 0, 1, "The name of the shape");
+		addAttribute(shape, "color", color, 1, 1, null);
+		addReference(shape, "children", shape, true, 0, ETypedElement.UNBOUNDED_MULTIPLICITY, "The shapes grouped under the shape");
+
+		final EClass polygon = createClass(ePackage, "Polygon", "Geometry", "A shape with straight sides");
+		polygon.getESuperTypes().add(shape);
+		addAttribute(polygon, "sides", EcorePackage.Literals.EINT, 0, 1, null);
+
+		final EClass circle = createClass(ePackage, "Circle", "Geometry", "A round shape");
+		circle.getESuperTypes().add(shape);
+		addAttribute(circle, "radius", EcorePackage.Literals.EDOUBLE, 1, 1, "The radius of the circle");
+
+		final EClass palette = createClass(ePackage, "Palette", "ColorModel", "The colors used by some shapes");
+		addAttribute(palette, "colors", color, 0, ETypedElement.UNBOUNDED_MULTIPLICITY, null);
+		addReference(palette, "shapes", shape, false, 0, ETypedElement.UNBOUNDED_MULTIPLICITY, null);
+		ePackage.getEClassifiers().add(color);
+
+		final EClass label = createClass(ePackage, "Label", null, "A label of no declared heading");
+		addAttribute(label, "text", EcorePackage.Literals.ESTRING, 0, 1, null);
+
+		final Resource resource = new ResourceImpl(URI.createFileURI("shapes.ecore"));
+		resource.getContents().add(ePackage);
+		resourceSet.getResources().add(resource);
+		return resource;
+	}
+
+	private static EClass createClass(EPackage ePackage, String name, String heading, String documentation) {
+		final EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+		eClass.setName(name);
+		annotate(eClass, BikeshedIndex.GENMODEL, "documentation", documentation);
+		if (heading != null) {
+			annotate(eClass, BikeshedIndex.BIKESHED, BikeshedIndex.HEADING, heading);
+		}
+		ePackage.getEClassifiers().add(eClass);
+		return eClass;
+	}
+
+	private static void addAttribute(EClass eClass, String name, EClassifier type, int lower, int upper, String documentation) {
+		final EAttribute attribute = EcoreFactory.eINSTANCE.createEAttribute();
+		attribute.setEType(type);
+		addFeature(eClass, attribute, name, lower, upper, documentation);
+	}
+
+	private static void addReference(EClass eClass, String name, EClass type, boolean containment, int lower, int upper, String documentation) {
+		final EReference reference = EcoreFactory.eINSTANCE.createEReference();
+		reference.setEType(type);
+		reference.setContainment(containment);
+		addFeature(eClass, reference, name, lower, upper, documentation);
+	}
+
+	private static void addFeature(EClass eClass, EStructuralFeature feature, String name, int lower, int upper, String documentation) {
+		feature.setName(name);
+		feature.setLowerBound(lower);
+		feature.setUpperBound(upper);
+		if (documentation != null) {
+			annotate(feature, BikeshedIndex.GENMODEL, "documentation", documentation);
+		}
+		eClass.getEStructuralFeatures().add(feature);
+	}
+
+	private static void annotate(EModelElement element, String source, String key, String value) {
+		EAnnotation annotation = element.getEAnnotation(source);
+		if (annotation == null) {
+			annotation = EcoreFactory.eINSTANCE.createEAnnotation();
+			annotation.setSource(source);
+			element.getEAnnotations().add(annotation);
+		}
+		annotation.getDetails().put(key, value);
+	}
+}
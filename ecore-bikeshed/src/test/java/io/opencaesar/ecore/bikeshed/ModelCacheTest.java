@@ -0,0 +1,154 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.opencaesar.ecore.common.ModelCache;
+
+/**
+ * Tests that the Bikeshed output of models read from the model cache is identical to the
+ * output of models parsed from their Xcore files
+ */
+public class ModelCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Counts the models read from the cache, which the cache logs one by one
+	 */
+	private final AtomicInteger hits = new AtomicInteger();
+
+	private final AppenderSkeleton hitCounter = new AppenderSkeleton() {
+		@Override
+		protected void append(LoggingEvent event) {
+			if (String.valueOf(event.getMessage()).startsWith("Reading cached: ")) {
+				hits.incrementAndGet();
+			}
+		}
+
+		@Override
+		public boolean requiresLayout() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	@Before
+	public void addHitCounter() {
+		Logger.getLogger(ModelCache.class).addAppender(hitCounter);
+	}
+
+	@After
+	public void removeHitCounter() {
+		Logger.getLogger(ModelCache.class).removeAppender(hitCounter);
+	}
+
+	@Test
+	public void cachedOutputEqualsUncachedOutput() throws IOException {
+		final File input = folder.newFolder("input");
+		final File cache = folder.newFolder("cache");
+		TestFiles.write(input, "base.xcore",
+			"package base\n" +
+			"\n" +
+			"abstract class Element {\n" +
+			"\tString name\n" +
+			"\tint count\n" +
+			"}\n" +
+			"\n" +
+			"enum Kind {\n" +
+			"\tsimple\n" +
+			"\tcomplex\n" +
+			"}\n");
+		TestFiles.write(input, "derived.xcore",
+			"package derived\n" +
+			"\n" +
+			"import base.Element\n" +
+			"import base.Kind\n" +
+			"\n" +
+			"class Part extends Element {\n" +
+			"\tKind kind\n" +
+			"\trefers Element[] related\n" +
+			"}\n");
+
+		final Map<String, String> uncached = generate(input, null);
+		assertFalse(uncached.isEmpty());
+		assertEquals(0, hits.get());
+
+		// both models are stored by the first cached run, then read by the next one
+		assertEquals("cold cache", uncached, generate(input, cache));
+		assertEquals(0, hits.get());
+		assertEquals(2, cacheEntries(cache));
+		assertEquals("warm cache", uncached, generate(input, cache));
+		assertEquals(2, hits.getAndSet(0));
+
+		// the changed file is parsed and links to the cached model of the other file
+		TestFiles.write(input, "derived.xcore",
+			"package derived\n" +
+			"\n" +
+			"import base.Element\n" +
+			"import base.Kind\n" +
+			"\n" +
+			"class Part extends Element {\n" +
+			"\tKind kind\n" +
+			"\trefers Element[] related\n" +
+			"}\n" +
+			"\n" +
+			"class Whole extends Element {\n" +
+			"\tcontains Part[] parts\n" +
+			"}\n");
+		final Map<String, String> changed = generate(input, null);
+		assertEquals(0, hits.get());
+		assertEquals("partially cached", changed, generate(input, cache));
+		assertEquals(1, hits.get());
+	}
+
+	private Map<String, String> generate(File input, File cache) throws IOException {
+		final File output = folder.newFolder();
+		if (cache != null) {
+			Ecore2BikeshedApp.main("-i", input.getPath(), "-o", output.getPath(), "--diagrams", "source-only", "--model-cache", cache.getPath());
+		} else {
+			Ecore2BikeshedApp.main("-i", input.getPath(), "-o", output.getPath(), "--diagrams", "source-only");
+		}
+		return TestFiles.read(output, ".md", ".puml");
+	}
+
+	private static long cacheEntries(File cache) throws IOException {
+		return TestFiles.readBytes(cache).keySet().stream().filter(name -> name.endsWith(".bin")).count();
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that rendering diagrams in parallel writes the same markdown as rendering them one at a time,
+ * and that every diagram is written before the run returns
+ */
+public class ParallelRenderingTest {
+
+	private static final int RUNS = 3;
+
+	private static final int[] PARALLELISMS = { 2, 4, 8 };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void parallelOutputEqualsSequentialOutput() throws IOException {
+		final File input = folder.newFolder("input");
+		// the last packages repeat the classes of the first ones, so some diagrams are rendered once and copied
+		for (int i = 0; i < 6; i++) {
+			TestFiles.write(input, "package" + i + ".xcore", createPackage(i, i % 3));
+		}
+
+		final Map<String, byte[]> sequential = generate(input, 1);
+		assertEquals(6, sequential.keySet().stream().filter(name -> name.endsWith(".md")).count());
+		for (int run = 0; run < RUNS; run++) {
+			for (int parallelism : PARALLELISMS) {
+				final Map<String, byte[]> parallel = generate(input, parallelism);
+				final String context = "run " + run + " with parallelism " + parallelism;
+				assertEquals(context, sequential.keySet(), parallel.keySet());
+				for (Map.Entry<String, byte[]> entry : parallel.entrySet()) {
+					if (entry.getKey().endsWith(".md")) {
+						assertEquals(context + ": " + entry.getKey(),
+							new String(sequential.get(entry.getKey()), StandardCharsets.UTF_8),
+							new String(entry.getValue(), StandardCharsets.UTF_8));
+					} else {
+						assertTrue(context + ": " + entry.getKey() + " is empty", entry.getValue().length > 0);
+					}
+				}
+			}
+		}
+	}
+
+	private Map<String, byte[]> generate(File input, int parallelism) throws IOException {
+		final File output = folder.newFolder();
+		Ecore2BikeshedApp.main("-i", input.getPath(), "-o", output.getPath(), "--parallelism", String.valueOf(parallelism));
+		final Map<String, byte[]> files = TestFiles.readBytes(output);
+		assertTrue(files.keySet().stream().anyMatch(name -> name.endsWith(".svg")));
+		return files;
+	}
+
+	/**
+	 * Creates a package with a few classes, whose names depend only on the given variant
+	 */
+	private static String createPackage(int index, int variant) {
+		final StringBuilder xcore = new StringBuilder();
+		xcore.append("package package").append(index).append("\n\n");
+		xcore.append("abstract class Element").append(variant).append(" {\n\tString name\n}\n\n");
+		for (int i = 0; i < 4; i++) {
+			xcore.append("class Part").append(variant).append('_').append(i)
+				.append(" extends Element").append(variant).append(" {\n")
+				.append("\tint count\n")
+				.append("\trefers Element").append(variant).append("[] related\n")
+				.append("}\n\n");
+		}
+		return xcore.toString();
+	}
+}
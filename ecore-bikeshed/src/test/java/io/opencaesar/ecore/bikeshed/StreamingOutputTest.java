@@ -0,0 +1,147 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAnnotation;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EModelElement;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.opencaesar.ecore.common.OutputStage;
+import io.opencaesar.ecore.common.PhaseProfiler;
+
+/**
+ * Tests that the markdown streamed to a file writer is the same as the whole document
+ * expanded as one string, for packages larger than the writer's buffer
+ */
+public class StreamingOutputTest {
+
+	private static final int CLASSES = 300;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void streamedOutputEqualsWholeDocument() throws IOException {
+		final File output = folder.newFolder("output");
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		final Resource first = createResource(resourceSet, "first");
+		final Resource second = createResource(resourceSet, "second");
+		final Map<EClass, List<EClass>> subClassIndex = Ecore2Bikeshed.indexSubClasses(resourceSet);
+
+		final PhaseProfiler profiler = new PhaseProfiler(false);
+		try (final OutputStage outputStage = new OutputStage(1, profiler);
+			 final ClassDiagramRenderer renderer = new ClassDiagramRenderer(1, null, outputStage, ClassDiagramRenderer.Mode.SOURCE_ONLY, profiler)) {
+			// the packages are generated one after the other with the same renderer, like the inputs of a run
+			for (Resource resource : new Resource[] { first, second }) {
+				final Ecore2Bikeshed generator = new Ecore2Bikeshed(resource, output.getPath(), subClassIndex, renderer);
+				final Path file = output.toPath().resolve(resource.getURI().trimFileExtension().lastSegment() + ".md");
+				try (final Writer out = Files.newBufferedWriter(file)) {
+					generator.run(out);
+				}
+
+				final EPackage ePackage = (EPackage) resource.getContents().get(0);
+				final StringBuilder document = new StringBuilder();
+				document.append(generator.generateHeader(ePackage));
+				for (String heading : generator.getHeadings(ePackage)) {
+					document.append(generator.generateHeading(ePackage, heading));
+				}
+				assertTrue(document.length() > 8192);
+				assertEquals(document.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			}
+			renderer.awaitAll();
+			outputStage.awaitAll();
+		}
+	}
+
+	/**
+	 * Creates a package whose classes are spread over two declared headings or have none,
+	 * with documentation holding characters outside of ASCII
+	 */
+	private static Resource createResource(ResourceSet resourceSet, String name) {
+		final EcoreFactory factory = EcoreFactory.eINSTANCE;
+		final EPackage ePackage = factory.createEPackage();
+		ePackage.setName(name);
+		ePackage.setNsPrefix(name);
+		ePackage.setNsURI("http://opencaesar.io/test/" + name);
+		annotate(ePackage, BikeshedIndex.GENMODEL, "documentation", "Le paquet « " + name + " » — façade");
+		annotate(ePackage, BikeshedIndex.BIKESHED_HEADINGS, "Structure", "");
+		annotate(ePackage, BikeshedIndex.BIKESHED_HEADINGS, "Behavior", "");
+
+		EClass previous = null;
+		for (int i = 0; i < CLASSES; i++) {
+			final EClass eClass = factory.createEClass();
+			eClass.setName("Class" + i);
+			eClass.setAbstract(i % 5 == 0);
+			if (previous != null && i % 2 == 0) {
+				eClass.getESuperTypes().add(previous);
+			}
+			annotate(eClass, BikeshedIndex.GENMODEL, "documentation", "Élément n° " + i + " ✓");
+			if (i % 3 == 1) {
+				annotate(eClass, BikeshedIndex.BIKESHED, BikeshedIndex.HEADING, "Structure");
+			} else if (i % 3 == 2) {
+				annotate(eClass, BikeshedIndex.BIKESHED, BikeshedIndex.HEADING, "Behavior");
+			}
+			final EAttribute attribute = factory.createEAttribute();
+			attribute.setName("name");
+			attribute.setEType(EcorePackage.Literals.ESTRING);
+			eClass.getEStructuralFeatures().add(attribute);
+			ePackage.getEClassifiers().add(eClass);
+			previous = eClass;
+		}
+
+		final Resource resource = new ResourceImpl(URI.createFileURI(name + ".ecore"));
+		resource.getContents().add(ePackage);
+		resourceSet.getResources().add(resource);
+		return resource;
+	}
+
+	private static void annotate(EModelElement element, String source, String key, String value) {
+		EAnnotation annotation = element.getEAnnotation(source);
+		if (annotation == null) {
+			annotation = EcoreFactory.eINSTANCE.createEAnnotation();
+			annotation.setSource(source);
+			element.getEAnnotations().add(annotation);
+		}
+		annotation.getDetails().put(key, value);
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.bikeshed;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Writes the input files and reads the output files of the tests
+ */
+final class TestFiles {
+
+	private TestFiles() {
+	}
+
+	/**
+	 * Writes a file, creating its folder if needed
+	 * 
+	 * @param folder The folder of the file
+	 * @param name The path of the file relative to the folder
+	 * @param content The content of the file
+	 * @throws IOException when the file cannot be written
+	 */
+	static void write(File folder, String name, String content) throws IOException {
+		final Path file = new File(folder, name).toPath();
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reads the files of a folder
+	 * 
+	 * @param folder The folder
+	 * @return The contents of its files keyed by their paths relative to the folder, sorted by path
+	 * @throws IOException when a file cannot be read
+	 */
+	static Map<String, byte[]> readBytes(File folder) throws IOException {
+		final Path root = folder.toPath();
+		final Map<String, byte[]> files = new TreeMap<>();
+		try (Stream<Path> paths = Files.walk(root)) {
+			for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+				files.put(root.relativize(file).toString(), Files.readAllBytes(file));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Reads the text files of a folder that have one of the given extensions
+	 * 
+	 * @param folder The folder
+	 * @param extensions The extensions of the files to read, with their dot
+	 * @return The contents of the files keyed by their paths relative to the folder, sorted by path
+	 * @throws IOException when a file cannot be read
+	 */
+	static Map<String, String> read(File folder, String... extensions) throws IOException {
+		final Map<String, String> files = new TreeMap<>();
+		readBytes(folder).forEach((name, content) -> {
+			if (Arrays.stream(extensions).anyMatch(name::endsWith)) {
+				files.put(name, new String(content, StandardCharsets.UTF_8));
+			}
+		});
+		return files;
+	}
+}
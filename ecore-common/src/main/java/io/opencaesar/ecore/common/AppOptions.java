@@ -0,0 +1,64 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import java.io.File;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterDescription;
+import com.beust.jcommander.ParameterException;
+
+/**
+ * Checks and normalizes the command line options shared by the Ecore tool apps
+ */
+public final class AppOptions {
+
+	private AppOptions() {}
+
+	/**
+	 * Checks that the options of the given names were given on the command line, which is checked
+	 * here rather than by JCommander since the daemon modes do not need them
+	 * 
+	 * @param builder The JCommander that parsed the command line
+	 * @param names The long names of the required options
+	 * @throws ParameterException when one of the options was not given
+	 */
+	public static void require(JCommander builder, String... names) {
+		for (String name : names) {
+			for (ParameterDescription parameter : builder.getParameters()) {
+				if (parameter.getLongestName().equals(name) && !parameter.isAssigned()) {
+					throw new ParameterException("The following option is required: [" + String.join(" | ", parameter.getParameter().names()) + "]");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Normalizes the given folder path by removing its trailing separator
+	 * 
+	 * @param path The folder path
+	 * @return The normalized folder path
+	 */
+	public static String normalizeFolderPath(String path) {
+		if (path != null && path.endsWith(File.separator)) {
+			return path.substring(0, path.length()-1);
+		}
+		return path;
+	}
+}
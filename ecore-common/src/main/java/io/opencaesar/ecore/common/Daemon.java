@@ -0,0 +1,332 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * A long-lived daemon that keeps a tool set up and a warm resource set resident, and runs the
+ * requests it receives on a loopback port.
+ * 
+ * A request is made of the daemon token, then the app arguments, one per line, followed by an
+ * empty line. The daemon answers with a single line that is either OK or ERROR followed by the
+ * error message. The token is generated when the daemon starts and written to a file only the
+ * current user can read, so other local users cannot make the tool read or write their paths.
+ */
+public class Daemon {
+
+	/**
+	 * Runs the requests of a daemon
+	 */
+	public interface Handler {
+		/**
+		 * Runs a request
+		 * 
+		 * @param resourceSet The resource set kept by the daemon across requests
+		 * @param args The app arguments of the request
+		 * @throws Exception when the request fails
+		 */
+		void handle(ResourceSet resourceSet, String[] args) throws Exception;
+	}
+
+	private static final String OK = "OK";
+	private static final String ERROR = "ERROR";
+	private static final int READ_TIMEOUT = 30_000;
+
+	private final Logger LOGGER = LogManager.getLogger(Daemon.class);
+
+	private final String tool;
+
+	private final int port;
+
+	private final Runnable setup;
+
+	private final Handler handler;
+
+	private final ResourceSet resourceSet = new ResourceSetImpl();
+
+	private final Map<URI, Long> timeStamps = new HashMap<>();
+
+	/**
+	 * Creates a new daemon
+	 * 
+	 * @param tool The name of the tool, which names its token file
+	 * @param port The loopback port to listen on
+	 * @param setup Sets up the tool once when the daemon starts
+	 * @param handler Runs the requests
+	 */
+	public Daemon(String tool, int port, Runnable setup, Handler handler) {
+		this.tool = tool;
+		this.port = port;
+		this.setup = setup;
+		this.handler = handler;
+	}
+
+	/**
+	 * Serves requests until the process is stopped
+	 */
+	public void run() {
+		setup.run();
+		final byte[] token = newToken();
+		final Path tokenFile = getTokenFile(tool, port);
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			writeToken(tokenFile, token);
+			tokenFile.toFile().deleteOnExit();
+			LOGGER.info("Daemon listening on " + server.getLocalSocketAddress() + " with token file " + tokenFile);
+			while (true) {
+				try (Socket socket = server.accept()) {
+					socket.setSoTimeout(READ_TIMEOUT);
+					serve(socket, token);
+				} catch (IOException e) {
+					LOGGER.error("Error serving request : " + e.getMessage(), e);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Error starting daemon on port " + port + " : " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Forwards the given app arguments to the daemon of the given tool listening on the given port
+	 * 
+	 * @param tool The name of the tool
+	 * @param port The loopback port of the daemon
+	 * @param pathOptions The options whose values are paths, resolved here against the current folder
+	 * @param args The app arguments
+	 * @throws RuntimeException when the daemon cannot be reached or the request fails
+	 */
+	public static void forward(String tool, int port, Collection<String> pathOptions, String... args) {
+		final List<String> request = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--connect")) {
+				i++;
+			} else if (pathOptions.contains(args[i]) && i + 1 < args.length) {
+				request.add(args[i]);
+				request.add(new File(args[++i]).getAbsolutePath());
+			} else {
+				request.add(args[i]);
+			}
+		}
+		final Path tokenFile = getTokenFile(tool, port);
+		final String token;
+		try {
+			token = new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8).trim();
+		} catch (IOException e) {
+			throw new RuntimeException("Error reading daemon token file " + tokenFile + " : " + e.getMessage(), e);
+		}
+		String response;
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			out.write(token + "\n");
+			for (String arg : request) {
+				out.write(arg + "\n");
+			}
+			out.write("\n");
+			out.flush();
+			final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			response = in.readLine();
+		} catch (IOException e) {
+			throw new RuntimeException("Error connecting to daemon on port " + port + " : " + e.getMessage(), e);
+		}
+		if (response == null) {
+			throw new RuntimeException("No response from daemon on port " + port);
+		} else if (!response.equals(OK)) {
+			throw new RuntimeException(response.substring(ERROR.length()).trim());
+		}
+	}
+
+	/**
+	 * Gets the token file of the daemon of the given tool on the given port
+	 * 
+	 * @param tool The name of the tool
+	 * @param port The loopback port of the daemon
+	 * @return The token file, in the .ecore-tools folder of the user home
+	 */
+	public static Path getTokenFile(String tool, int port) {
+		return Paths.get(System.getProperty("user.home"), ".ecore-tools", tool + "-" + port + ".token");
+	}
+
+	private void serve(Socket socket, byte[] token) throws IOException {
+		final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		final String requestToken = in.readLine();
+		final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+		if (requestToken == null || !MessageDigest.isEqual(token, requestToken.getBytes(StandardCharsets.UTF_8))) {
+			LOGGER.warn("Rejected request with an invalid token from " + socket.getRemoteSocketAddress());
+			out.write(ERROR + " Invalid daemon token\n");
+			out.flush();
+			return;
+		}
+		final List<String> args = new ArrayList<>();
+		String line;
+		while ((line = in.readLine()) != null && !line.isEmpty()) {
+			args.add(line);
+		}
+
+		String response;
+		try {
+			prune();
+			refresh();
+			handler.handle(resourceSet, args.toArray(new String[0]));
+			response = OK;
+		} catch (Exception e) {
+			LOGGER.error("Error running request : " + e.getMessage(), e);
+			response = ERROR + " " + String.valueOf(e.getMessage()).replace('\n', ' ');
+		} finally {
+			prune();
+			recordTimeStamps();
+		}
+
+		out.write(response + "\n");
+		out.flush();
+	}
+
+	private static byte[] newToken() {
+		final byte[] random = new byte[32];
+		new SecureRandom().nextBytes(random);
+		final StringBuilder hex = new StringBuilder();
+		for (byte b : random) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void writeToken(Path tokenFile, byte[] token) throws IOException {
+		final Path folder = tokenFile.getParent();
+		Files.createDirectories(folder);
+		final Path tempFile;
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			tempFile = Files.createTempFile(folder, tokenFile.getFileName().toString(), ".tmp",
+					PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} else {
+			tempFile = Files.createTempFile(folder, tokenFile.getFileName().toString(), ".tmp");
+		}
+		Files.write(tempFile, token);
+		try {
+			Files.move(tempFile, tokenFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile, tokenFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Unloads the resources whose files changed since they were loaded, along with the
+	 * resources that reference them, so they get reloaded by the next request
+	 */
+	private void refresh() {
+		final Set<Resource> stale = new HashSet<>();
+		for (Resource resource : resourceSet.getResources()) {
+			final File file = getFile(resource);
+			if (file != null) {
+				final Long timeStamp = timeStamps.get(resource.getURI());
+				if (timeStamp == null || !file.exists() || file.lastModified() != timeStamp) {
+					stale.add(resource);
+				}
+			}
+		}
+		boolean changed = !stale.isEmpty();
+		while (changed) {
+			changed = false;
+			for (Resource resource : new ArrayList<>(resourceSet.getResources())) {
+				if (!stale.contains(resource) && references(resource, stale)) {
+					stale.add(resource);
+					changed = true;
+				}
+			}
+		}
+		for (Resource resource : stale) {
+			LOGGER.debug("Unloading: " + resource.getURI());
+			resource.unload();
+			resourceSet.getResources().remove(resource);
+			timeStamps.remove(resource.getURI());
+		}
+	}
+
+	/**
+	 * Forgets the time stamps of the resources that are no longer in the resource set, since
+	 * requests may unload and remove resources themselves
+	 */
+	private void prune() {
+		final Set<URI> uris = new HashSet<>();
+		for (Resource resource : resourceSet.getResources()) {
+			uris.add(resource.getURI());
+		}
+		timeStamps.keySet().retainAll(uris);
+	}
+
+	/**
+	 * Records the time stamps of the resources loaded by the request, which are the ones their files
+	 * had when they were opened for loading, so a file saved while it was being loaded is seen as
+	 * changed by the next request. Resources loaded without a time stamp are reloaded by the next request.
+	 */
+	private void recordTimeStamps() {
+		for (Resource resource : resourceSet.getResources()) {
+			if (getFile(resource) != null && resource.isLoaded() && resource.getTimeStamp() != 0) {
+				timeStamps.putIfAbsent(resource.getURI(), resource.getTimeStamp());
+			}
+		}
+	}
+
+	private boolean references(Resource resource, Set<Resource> resources) {
+		for (EObject referenced : EcoreUtil.ExternalCrossReferencer.find(resource).keySet()) {
+			if (resources.contains(referenced.eResource())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private File getFile(Resource resource) {
+		final URI uri = resource.getURI();
+		return (uri != null && uri.isFile()) ? new File(uri.toFileString()) : null;
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Collects the input files of an input folder that match include glob patterns and
+ * do not match exclude glob patterns.
+ * 
+ * Patterns are matched against paths relative to the input folder, using '/' as separator.
+ * A pattern starting with '**&#47;' also matches at the top of the input folder, and an exclude
+ * pattern ending with '&#47;**' also matches the folder itself. Excluded folders are not visited,
+ * and the top-level folders are visited in parallel.
+ * 
+ * Symbolic links to files and folders are followed, and matched by their path in the input folder.
+ * Links back to a folder being visited, including the input folder, are skipped.
+ */
+public class InputFileCollector {
+
+	/**
+	 * The include patterns used when none are given
+	 */
+	public static final List<String> DEFAULT_INCLUDES = Arrays.asList("**.xcore", "**.genmodel");
+
+	private final Logger LOGGER = LogManager.getLogger(InputFileCollector.class);
+
+	private final List<PathMatcher> includes;
+
+	private final List<PathMatcher> excludes;
+
+	private final List<PathMatcher> folderExcludes;
+
+	/**
+	 * Creates a new collector
+	 * 
+	 * @param includes The glob patterns of the files to include (or null for the default ones)
+	 * @param excludes The glob patterns of the files and folders to exclude (or null for none)
+	 */
+	public InputFileCollector(Collection<String> includes, Collection<String> excludes) {
+		this.includes = toMatchers(includes != null ? includes : DEFAULT_INCLUDES);
+		this.excludes = toMatchers(excludes != null ? excludes : new ArrayList<>());
+		this.folderExcludes = toMatchers((excludes != null ? excludes : new ArrayList<String>()).stream()
+				.map(pattern -> pattern.endsWith("/**") ? pattern.substring(0, pattern.length() - 3) : pattern)
+				.collect(Collectors.toList()));
+	}
+
+	/**
+	 * Collects the matching files of the given folder
+	 * 
+	 * @param folder The input folder
+	 * @return The matching files sorted by their relative paths
+	 * @throws RuntimeException when the input folder cannot be read
+	 */
+	public List<File> collect(File folder) {
+		final long start = System.currentTimeMillis();
+		final Path root = folder.toPath();
+		final Path realRoot;
+		final List<Path> children;
+		try (Stream<Path> stream = Files.list(root)) {
+			realRoot = root.toRealPath();
+			children = stream.collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException("Error reading " + folder + " : " + e.getMessage(), e);
+		}
+
+		final ConcurrentLinkedQueue<Path> found = new ConcurrentLinkedQueue<>();
+		try {
+			children.parallelStream().forEach(child -> walk(root, realRoot, child, found));
+		} catch (UncheckedIOException e) {
+			throw new RuntimeException("Error reading " + folder + " : " + e.getCause().getMessage(), e.getCause());
+		}
+
+		final List<File> files = found.stream()
+				.sorted(Comparator.comparing(path -> relativize(root, path)))
+				.map(Path::toFile)
+				.collect(Collectors.toList());
+		LOGGER.info("Discovered " + files.size() + " input files in " + (System.currentTimeMillis() - start) + " ms");
+		return files;
+	}
+
+	private void walk(Path root, Path realRoot, Path start, Collection<Path> found) {
+		try {
+			Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+					if (!dir.equals(root) && matches(folderExcludes, root.relativize(dir))) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					// each top-level child is walked on its own, so the walk does not detect the links back to the input folder
+					if (Files.isSymbolicLink(dir) && dir.toRealPath().equals(realRoot)) {
+						LOGGER.warn("Skipping link to the input folder " + dir);
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					final Path path = root.relativize(file);
+					if (attrs.isRegularFile() && matches(includes, path) && !matches(excludes, path)) {
+						found.add(file);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					if (e instanceof FileSystemLoopException) {
+						LOGGER.warn("Skipping link to a folder being visited " + file);
+					} else {
+						LOGGER.warn("Skipping unreadable " + file + " : " + e.getMessage());
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static boolean matches(List<PathMatcher> matchers, Path path) {
+		return matchers.stream().anyMatch(matcher -> matcher.matches(path));
+	}
+
+	private static String relativize(Path root, Path path) {
+		return root.relativize(path).toString().replace(File.separatorChar, '/');
+	}
+
+	private static List<PathMatcher> toMatchers(Collection<String> patterns) {
+		final FileSystem fileSystem = FileSystems.getDefault();
+		final List<PathMatcher> matchers = new ArrayList<>();
+		for (final String pattern : patterns) {
+			matchers.add(fileSystem.getPathMatcher("glob:" + pattern));
+			if (pattern.startsWith("**/")) {
+				matchers.add(fileSystem.getPathMatcher("glob:" + pattern.substring(3)));
+			}
+		}
+		return matchers;
+	}
+}
@@ -0,0 +1,244 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.ETypedElement;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * An on-disk cache of loaded Xcore models stored as EMF binary resources.
+ * 
+ * An entry is keyed by the tool version, the location and the content of its source file.
+ * It also records the hashes of the other files its model references, and is only reused
+ * while those files are unchanged, since its references point into their models. Models that
+ * do not survive the binary form, because they have unresolved references or rely on Xcore
+ * mappings for their types, are not cached.
+ */
+public class ModelCache {
+
+	private static final String XCORE = "xcore";
+	private static final String MODEL = ".bin";
+	private static final String DEPENDENCIES = ".deps";
+
+	private final Logger LOGGER = LogManager.getLogger(ModelCache.class);
+
+	private final Path folder;
+
+	private final String version;
+
+	private final Map<File, String> hashes = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new cache
+	 * 
+	 * @param folder The folder of the cache
+	 * @param version The version of the tool
+	 */
+	public ModelCache(Path folder, String version) {
+		this.folder = folder;
+		this.version = version;
+	}
+
+	/**
+	 * Loads the cached model of the given file into the given resource set
+	 * 
+	 * @param resourceSet The resource set to load the model into
+	 * @param file The source file of the model
+	 * @return The loaded resource, with the time stamp the file had before its entry was looked up,
+	 * or null when the file is not cached or its entry is stale
+	 */
+	public Resource load(ResourceSet resourceSet, File file) {
+		if (!isCacheable(file)) {
+			return null;
+		}
+		final long timeStamp = file.lastModified();
+		final URI uri = URI.createFileURI(file.getAbsolutePath());
+		try {
+			final String key = key(file);
+			final Path modelFile = folder.resolve(key + MODEL);
+			final Path dependenciesFile = folder.resolve(key + DEPENDENCIES);
+			if (!Files.exists(modelFile) || !Files.exists(dependenciesFile)) {
+				return null;
+			}
+			final Properties dependencies = new Properties();
+			try (InputStream in = Files.newInputStream(dependenciesFile)) {
+				dependencies.load(in);
+			}
+			for (final String dependency : dependencies.stringPropertyNames()) {
+				final File dependencyFile = new File(dependency);
+				if (!dependencyFile.isFile() || !hash(dependencyFile).equals(dependencies.getProperty(dependency))) {
+					LOGGER.debug("Stale cached model: " + uri);
+					return null;
+				}
+			}
+			final Resource resource = new BinaryResourceImpl(uri);
+			resourceSet.getResources().add(resource);
+			try (InputStream in = Files.newInputStream(modelFile)) {
+				resource.load(in, resourceSet.getLoadOptions());
+			} catch (IOException | RuntimeException e) {
+				resourceSet.getResources().remove(resource);
+				throw e;
+			}
+			resource.setTimeStamp(timeStamp);
+			LOGGER.info("Reading cached: " + uri);
+			return resource;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Error reading cached model of " + uri + " : " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the model of the given file to the cache
+	 * 
+	 * @param resource The loaded resource of the file
+	 * @param file The source file of the model
+	 */
+	public void save(Resource resource, File file) {
+		if (!isCacheable(file)) {
+			return;
+		}
+		try {
+			// resolve the lazy links, which cannot be resolved once stored in binary form
+			EcoreUtil.resolveAll(resource);
+
+			// only cache the models that survive being stored in binary form
+			if (!EcoreUtil.UnresolvedProxyCrossReferencer.find(resource).isEmpty() || hasUnresolvedTypes(resource)) {
+				LOGGER.debug("Not caching: " + resource.getURI());
+				return;
+			}
+
+			final Properties dependencies = new Properties();
+			for (final EObject referenced : EcoreUtil.ExternalCrossReferencer.find(resource).keySet()) {
+				final Resource referencedResource = referenced.eResource();
+				if (referencedResource != null && referencedResource != resource && referencedResource.getURI().isFile()) {
+					final File dependencyFile = new File(referencedResource.getURI().toFileString());
+					if (dependencyFile.isFile()) {
+						dependencies.setProperty(dependencyFile.getAbsolutePath(), hash(dependencyFile));
+					}
+				}
+			}
+
+			final String key = key(file);
+			Files.createDirectories(folder);
+			final Path dependenciesFile = Files.createTempFile(folder, key, ".tmp");
+			try (OutputStream out = Files.newOutputStream(dependenciesFile)) {
+				dependencies.store(out, null);
+			}
+			final Path modelFile = Files.createTempFile(folder, key, ".tmp");
+			try (OutputStream out = Files.newOutputStream(modelFile)) {
+				final BinaryResourceImpl.EObjectOutputStream stream = new BinaryResourceImpl.EObjectOutputStream(out, null);
+				stream.saveResource(resource);
+				stream.flush();
+			}
+			move(dependenciesFile, folder.resolve(key + DEPENDENCIES));
+			move(modelFile, folder.resolve(key + MODEL));
+			LOGGER.debug("Caching: " + resource.getURI());
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Error caching model of " + resource.getURI() + " : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Whether some typed elements of the given resource fell back to EJavaObject, in which case
+	 * their original type names are only kept by Xcore mappings, which are adapters that binary
+	 * resources do not store
+	 */
+	private boolean hasUnresolvedTypes(Resource resource) {
+		final TreeIterator<EObject> i = resource.getAllContents();
+		while (i.hasNext()) {
+			final EObject object = i.next();
+			if (object instanceof ETypedElement && ((ETypedElement) object).getEType() == EcorePackage.Literals.EJAVA_OBJECT) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isCacheable(File file) {
+		return file.getName().endsWith("." + XCORE);
+	}
+
+	private String key(File file) throws IOException {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(version.getBytes(StandardCharsets.UTF_8));
+			digest.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+			digest.update(hash(file).getBytes(StandardCharsets.UTF_8));
+			return toHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String hash(File file) throws IOException {
+		String hash = hashes.get(file);
+		if (hash == null) {
+			try {
+				final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+				digest.update(Files.readAllBytes(file.toPath()));
+				hash = toHex(digest.digest());
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			hashes.put(file, hash);
+		}
+		return hash;
+	}
+
+	private static String toHex(byte[] bytes) {
+		final StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
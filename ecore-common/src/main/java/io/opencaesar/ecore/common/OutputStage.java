@@ -0,0 +1,256 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Writes output files on a bounded pool of workers, skipping the files whose content is unchanged.
+ * 
+ * A changed file is first written to a temporary file next to it, then renamed over it, so
+ * readers never see a partially written file. Unchanged files keep their modification time.
+ */
+public class OutputStage implements AutoCloseable {
+
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+	private final Logger LOGGER = LogManager.getLogger(OutputStage.class);
+
+	private final ExecutorService executor;
+
+	private final List<Future<?>> pending = new ArrayList<>();
+
+	private final AtomicInteger written = new AtomicInteger();
+
+	private final AtomicInteger unchanged = new AtomicInteger();
+
+	private final AtomicInteger failed = new AtomicInteger();
+
+	private final PhaseProfiler profiler;
+
+	/**
+	 * Creates a new output stage
+	 * 
+	 * @param parallelism The maximum number of files written at the same time
+	 * @param profiler The profiler measuring the saving of each file
+	 */
+	public OutputStage(int parallelism, PhaseProfiler profiler) {
+		this.executor = Executors.newFixedThreadPool(parallelism);
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Creates a temporary file to stream the content of the given output file to,
+	 * before committing it with {@link #submit(Path, Path)}
+	 * 
+	 * @param file The output file
+	 * @return The temporary file
+	 * @throws IOException when the temporary file cannot be created
+	 */
+	public Path createTempFile(Path file) throws IOException {
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		return Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+	}
+
+	/**
+	 * Schedules the commit of the given temporary file to the given output file
+	 * 
+	 * @param file The output file
+	 * @param tempFile The temporary file holding the new content
+	 */
+	public synchronized void submit(Path file, Path tempFile) {
+		pending.add(executor.submit(() -> {
+			try (PhaseProfiler.Timer timer = profiler.start("save", file.toString())) {
+				commit(file, tempFile);
+			}
+			return null;
+		}));
+	}
+
+	/**
+	 * Schedules the write of the given content to the given output file
+	 * 
+	 * @param file The output file
+	 * @param content The new content
+	 */
+	public synchronized void submit(Path file, byte[] content) {
+		pending.add(executor.submit(() -> {
+			write(file, content);
+			return null;
+		}));
+	}
+
+	/**
+	 * Writes the given content to the given output file on the calling thread
+	 * 
+	 * @param file The output file
+	 * @param content The new content
+	 * @throws IOException when the file cannot be written
+	 */
+	public void write(Path file, byte[] content) throws IOException {
+		try (PhaseProfiler.Timer timer = profiler.start("save", file.toString())) {
+			doWrite(file, content);
+		}
+	}
+
+	private void doWrite(Path file, byte[] content) throws IOException {
+		Path tempFile = null;
+		try {
+			if (Files.isRegularFile(file) && Files.size(file) == content.length && equals(new ByteArrayInputStream(content), file)) {
+				unchanged(file);
+				return;
+			}
+			tempFile = createTempFile(file);
+			Files.write(tempFile, content);
+		} catch (IOException e) {
+			if (tempFile != null) {
+				Files.deleteIfExists(tempFile);
+			}
+			fail(file, e);
+			throw e;
+		}
+		commit(file, tempFile);
+	}
+
+	/**
+	 * Waits until every scheduled file is written and logs the counts of written, unchanged and failed files
+	 * 
+	 * @throws RuntimeException when one or more files failed to be written
+	 */
+	public void awaitAll() {
+		final List<Future<?>> futures;
+		synchronized (this) {
+			futures = new ArrayList<>(pending);
+			pending.clear();
+		}
+		RuntimeException failure = null;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = new RuntimeException("Error saving output files", e.getCause());
+				} else {
+					failure.addSuppressed(e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while saving output files", e);
+			}
+		}
+		LOGGER.info("Written= " + written.get() + ", Unchanged= " + unchanged.get() + ", Failed= " + failed.get());
+		if (failure != null) {
+			throw failure;
+		} else if (failed.get() > 0) {
+			throw new RuntimeException("Error saving " + failed.get() + " output files");
+		}
+	}
+
+	/**
+	 * Waits up to {@value #SHUTDOWN_TIMEOUT_SECONDS} seconds for the scheduled files to be written,
+	 * so none is left half committed, then cancels the remaining ones
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				LOGGER.warn("Cancelling the output files not written after " + SHUTDOWN_TIMEOUT_SECONDS + " seconds");
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void commit(Path file, Path tempFile) throws IOException {
+		try {
+			if (Files.isRegularFile(file) && Files.size(file) == Files.size(tempFile) && equals(Files.newInputStream(tempFile), file)) {
+				Files.delete(tempFile);
+				unchanged(file);
+				return;
+			}
+			try {
+				Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			written.incrementAndGet();
+			LOGGER.info("Saving: " + file);
+		} catch (IOException e) {
+			Files.deleteIfExists(tempFile);
+			fail(file, e);
+			throw e;
+		}
+	}
+
+	private void unchanged(Path file) {
+		unchanged.incrementAndGet();
+		LOGGER.debug("Unchanged: " + file);
+	}
+
+	/**
+	 * Records that the given output file failed to be produced
+	 * 
+	 * @param file The output file
+	 * @param e The cause of the failure
+	 */
+	public void fail(Path file, IOException e) {
+		failed.incrementAndGet();
+		LOGGER.error("Error saving " + file + " : " + e.getMessage(), e);
+	}
+
+	/**
+	 * Compares the given content with the content of the given file of the same length,
+	 * stopping at the first difference
+	 */
+	private static boolean equals(InputStream content, Path file) throws IOException {
+		try (InputStream in1 = content; InputStream in2 = Files.newInputStream(file)) {
+			final byte[] buffer1 = new byte[8192];
+			final byte[] buffer2 = new byte[8192];
+			int read1;
+			while ((read1 = in1.readNBytes(buffer1, 0, buffer1.length)) > 0) {
+				final int read2 = in2.readNBytes(buffer2, 0, read1);
+				if (read2 != read1 || !Arrays.equals(buffer1, 0, read1, buffer2, 0, read1)) {
+					return false;
+				}
+			}
+			return in2.read() == -1;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+
+/**
+ * Loads input files into a resource set on a bounded pool of threads.
+ * 
+ * Loading happens in two phases. The files are first parsed concurrently, each in its own
+ * resource set since resource sets are not thread safe, which leaves their cross references
+ * as unresolved proxies. The parsed resources are then moved to the given resource set and
+ * their contents initialized one at a time, in input order, which links them to each other
+ * the same way a serial load does. Files found in the model cache skip parsing.
+ */
+public class ParallelResourceLoader {
+
+	private final Logger LOGGER = LogManager.getLogger(ParallelResourceLoader.class);
+
+	private final int threads;
+
+	private final ModelCache modelCache;
+
+	private final PhaseProfiler profiler;
+
+	/**
+	 * Creates a new loader
+	 * 
+	 * @param threads The maximum number of files parsed at the same time
+	 * @param modelCache The cache of loaded models (or null for no cache)
+	 * @param profiler The profiler measuring the loading of each file
+	 */
+	public ParallelResourceLoader(int threads, ModelCache modelCache, PhaseProfiler profiler) {
+		this.threads = threads;
+		this.modelCache = modelCache;
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Loads the given files into the given resource set
+	 * 
+	 * @param resourceSet The resource set to load the files into
+	 * @param files The files to load
+	 * @return The loaded resources keyed by their files, in the order of the files
+	 * @throws RuntimeException when one or more files fail to load
+	 */
+	public Map<File, Resource> load(ResourceSet resourceSet, Collection<File> files) {
+		final Map<File, Resource> cached = new HashMap<>();
+		final List<File> parsedFiles = new ArrayList<>();
+		for (final File file : files) {
+			final URI uri = URI.createFileURI(file.getAbsolutePath());
+			final Resource existing = resourceSet.getResource(uri, false);
+			if (existing != null && existing.isLoaded()) {
+				cached.put(file, existing);
+			} else {
+				Resource resource = null;
+				if (modelCache != null && existing == null) {
+					try (PhaseProfiler.Timer timer = profiler.start("cache", file.getPath())) {
+						resource = modelCache.load(resourceSet, file);
+					}
+				}
+				if (resource != null) {
+					cached.put(file, resource);
+				} else {
+					parsedFiles.add(file);
+				}
+			}
+		}
+
+		final Map<File, Resource> parsed = parse(resourceSet, parsedFiles);
+		if (modelCache != null) {
+			parsed.forEach((file, resource) -> {
+				try (PhaseProfiler.Timer timer = profiler.start("cache", file.getPath())) {
+					modelCache.save(resource, file);
+				}
+			});
+		}
+
+		final LinkedHashMap<File, Resource> resources = new LinkedHashMap<>();
+		for (final File file : files) {
+			final Resource resource = cached.containsKey(file) ? cached.get(file) : parsed.get(file);
+			if (resource != null) {
+				resources.put(file, resource);
+			}
+		}
+		return resources;
+	}
+
+	private Map<File, Resource> parse(ResourceSet resourceSet, Collection<File> files) {
+		final LinkedHashMap<File, Resource> resources = new LinkedHashMap<>();
+		if (threads <= 1) {
+			for (final File file : files) {
+				final URI uri = URI.createFileURI(file.getAbsolutePath());
+				final Resource resource;
+				try (PhaseProfiler.Timer timer = profiler.start("load", file.getPath())) {
+					resource = resourceSet.getResource(uri, true);
+				}
+				if (resource != null) {
+					LOGGER.info("Reading: " + uri);
+					resources.put(file, resource);
+				}
+			}
+			return resources;
+		}
+
+		// load the resources that already exist in the resource set in place
+		final Map<File, Resource> loaded = new HashMap<>();
+		final List<File> unloaded = new ArrayList<>();
+		for (final File file : files) {
+			final URI uri = URI.createFileURI(file.getAbsolutePath());
+			final Resource resource = resourceSet.getResource(uri, false);
+			if (resource != null) {
+				try (PhaseProfiler.Timer timer = profiler.start("load", file.getPath())) {
+					resource.load(resourceSet.getLoadOptions());
+				} catch (IOException e) {
+					throw new RuntimeException("Error loading " + uri + " : " + e.getMessage(), e);
+				}
+				LOGGER.info("Reading: " + uri);
+				loaded.put(file, resource);
+			} else {
+				unloaded.add(file);
+			}
+		}
+
+		// parse the other resources concurrently, each in its own resource set since resource sets are not thread safe
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, unloaded.size())));
+		final List<Resource> parsed = new ArrayList<>();
+		try {
+			final List<Future<Resource>> futures = new ArrayList<>();
+			for (final File file : unloaded) {
+				futures.add(executor.submit(() -> parse(resourceSet, file)));
+			}
+			RuntimeException failure = null;
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					parsed.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					final String message = "Error loading " + unloaded.get(i) + " : " + e.getCause().getMessage();
+					LOGGER.error(message, e.getCause());
+					if (failure == null) {
+						failure = new RuntimeException(message, e.getCause());
+					} else {
+						failure.addSuppressed(e.getCause());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while loading inputs", e);
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// move the parsed resources to the resource set
+		for (int i = 0; i < unloaded.size(); i++) {
+			final Resource resource = parsed.get(i);
+			if (resource != null) {
+				resourceSet.getResources().add(resource);
+				loaded.put(unloaded.get(i), resource);
+			}
+		}
+		for (final File file : files) {
+			if (loaded.containsKey(file)) {
+				resources.put(file, loaded.get(file));
+			}
+		}
+
+		// link the resources serially
+		for (final Resource resource : resources.values()) {
+			try (PhaseProfiler.Timer timer = profiler.start("link", resource.getURI().toFileString())) {
+				resource.getContents();
+			}
+		}
+		return resources;
+	}
+
+	/**
+	 * Parses the given file in a new resource set that shares the configuration of the given one
+	 * 
+	 * @param resourceSet The resource set the parsed resource is meant for
+	 * @param file The file to parse
+	 * @return The parsed resource (or null if the file has no resource factory)
+	 * @throws IOException when the file fails to parse
+	 */
+	private Resource parse(ResourceSet resourceSet, File file) throws IOException {
+		final ResourceSet localResourceSet = new ResourceSetImpl();
+		localResourceSet.setPackageRegistry(resourceSet.getPackageRegistry());
+		localResourceSet.setResourceFactoryRegistry(resourceSet.getResourceFactoryRegistry());
+		localResourceSet.setURIConverter(resourceSet.getURIConverter());
+		localResourceSet.getLoadOptions().putAll(resourceSet.getLoadOptions());
+		final URI uri = URI.createFileURI(file.getAbsolutePath());
+		final Resource resource = localResourceSet.createResource(uri);
+		if (resource != null) {
+			LOGGER.info("Reading: " + uri);
+			try (PhaseProfiler.Timer timer = profiler.start("load", file.getPath())) {
+				resource.load(localResourceSet.getLoadOptions());
+			}
+		}
+		return resource;
+	}
+}
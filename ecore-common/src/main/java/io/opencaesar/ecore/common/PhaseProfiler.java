@@ -0,0 +1,250 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of the phases of a run, per input file.
+ * 
+ * Each measurement covers the thread that runs it, so phases running on worker threads are
+ * measured on those threads and summed per phase. When disabled, measuring costs nothing.
+ */
+public class PhaseProfiler {
+
+	private static final Timer NO_OP = () -> {};
+
+	private final Logger LOGGER = LogManager.getLogger(PhaseProfiler.class);
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private final boolean enabled;
+
+	private final long start = System.nanoTime();
+
+	private final List<Record> records = new ArrayList<>();
+
+	private static class Record {
+		String phase;
+		String input;
+		long wallNanos;
+		long cpuNanos;
+		long allocatedBytes;
+		int count = 1;
+	}
+
+	/**
+	 * A running measurement, recorded when closed
+	 */
+	public interface Timer extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	/**
+	 * Creates a new profiler
+	 * 
+	 * @param enabled Whether phases are measured
+	 */
+	public PhaseProfiler(boolean enabled) {
+		this.enabled = enabled;
+		if (enabled && threads.isThreadCpuTimeSupported()) {
+			threads.setThreadCpuTimeEnabled(true);
+		}
+		if (enabled && threads instanceof com.sun.management.ThreadMXBean) {
+			final com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if (sunThreads.isThreadAllocatedMemorySupported()) {
+				sunThreads.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+	}
+
+	/**
+	 * Starts measuring a phase that is not specific to an input file
+	 * 
+	 * @param phase The name of the phase
+	 * @return The measurement, to close when the phase ends
+	 */
+	public Timer start(String phase) {
+		return start(phase, null);
+	}
+
+	/**
+	 * Starts measuring a phase for the given input file on the current thread
+	 * 
+	 * @param phase The name of the phase
+	 * @param input The input file the phase works on (or null)
+	 * @return The measurement, to close when the phase ends
+	 */
+	public Timer start(String phase, String input) {
+		if (!enabled) {
+			return NO_OP;
+		}
+		final long wall = System.nanoTime();
+		final long cpu = cpuNanos();
+		final long allocated = allocatedBytes();
+		return () -> {
+			final Record record = new Record();
+			record.phase = phase;
+			record.input = input;
+			record.wallNanos = System.nanoTime() - wall;
+			record.cpuNanos = cpuNanos() - cpu;
+			record.allocatedBytes = allocatedBytes() - allocated;
+			synchronized (records) {
+				records.add(record);
+			}
+		};
+	}
+
+	/**
+	 * Logs a summary table of the phases, followed by a table of the phases per input file
+	 */
+	public void report() {
+		if (!enabled) {
+			return;
+		}
+		final List<Record> phases = summarize();
+		final List<Record> inputs = getRecords();
+		LOGGER.info("Profile (total " + (System.nanoTime() - start) / 1_000_000 + " ms):");
+		LOGGER.info(String.format(Locale.ROOT, "%-12s %8s %12s %12s %14s", "Phase", "Count", "Wall (ms)", "CPU (ms)", "Alloc (MB)"));
+		for (Record r : phases) {
+			LOGGER.info(format(r.phase, r));
+		}
+		LOGGER.info(String.format(Locale.ROOT, "%-12s %8s %12s %12s %14s  %s", "Phase", "Count", "Wall (ms)", "CPU (ms)", "Alloc (MB)", "Input"));
+		for (Record r : inputs) {
+			if (r.input != null) {
+				LOGGER.info(format(r.phase, r) + "  " + r.input);
+			}
+		}
+	}
+
+	/**
+	 * Writes the measurements as a JSON report
+	 * 
+	 * @param file The report file
+	 * @throws IOException when the report cannot be written
+	 */
+	public void writeJson(File file) throws IOException {
+		if (file.getAbsoluteFile().getParentFile() != null) {
+			file.getAbsoluteFile().getParentFile().mkdirs();
+		}
+		try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			out.write("{\n  \"totalMillis\": " + (System.nanoTime() - start) / 1_000_000 + ",\n");
+			out.write("  \"phases\": [\n");
+			writeJson(out, summarize());
+			out.write("  ],\n  \"inputs\": [\n");
+			writeJson(out, getRecords());
+			out.write("  ]\n}\n");
+		}
+		LOGGER.info("Profile report written to " + file.getAbsolutePath());
+	}
+
+	private void writeJson(BufferedWriter out, List<Record> records) throws IOException {
+		for (int i = 0; i < records.size(); i++) {
+			final Record r = records.get(i);
+			out.write("    {\"phase\": \"" + escape(r.phase) + "\"");
+			if (r.input != null) {
+				out.write(", \"input\": \"" + escape(r.input) + "\"");
+			}
+			out.write(", \"count\": " + r.count
+					+ ", \"wallMillis\": " + r.wallNanos / 1_000_000
+					+ ", \"cpuMillis\": " + r.cpuNanos / 1_000_000
+					+ ", \"allocatedBytes\": " + r.allocatedBytes + "}"
+					+ (i < records.size() - 1 ? "," : "") + "\n");
+		}
+	}
+
+	private List<Record> getRecords() {
+		synchronized (records) {
+			return new ArrayList<>(records);
+		}
+	}
+
+	private List<Record> summarize() {
+		final Map<String, Record> phases = new LinkedHashMap<>();
+		for (Record r : getRecords()) {
+			final Record phase = phases.computeIfAbsent(r.phase, p -> {
+				final Record s = new Record();
+				s.phase = p;
+				s.count = 0;
+				return s;
+			});
+			phase.count++;
+			phase.wallNanos += r.wallNanos;
+			phase.cpuNanos += r.cpuNanos;
+			phase.allocatedBytes += r.allocatedBytes;
+		}
+		return new ArrayList<>(phases.values());
+	}
+
+	private static String format(String phase, Record r) {
+		return String.format(Locale.ROOT, "%-12s %8d %12d %12d %14.1f", phase, r.count,
+				r.wallNanos / 1_000_000, r.cpuNanos / 1_000_000, r.allocatedBytes / (1024.0 * 1024.0));
+	}
+
+	private static String escape(String value) {
+		final StringBuilder escaped = new StringBuilder(value.length());
+		for (char c : value.toCharArray()) {
+			switch (c) {
+				case '"': escaped.append("\\\""); break;
+				case '\\': escaped.append("\\\\"); break;
+				case '\b': escaped.append("\\b"); break;
+				case '\f': escaped.append("\\f"); break;
+				case '\n': escaped.append("\\n"); break;
+				case '\r': escaped.append("\\r"); break;
+				case '\t': escaped.append("\\t"); break;
+				default:
+					if (c < 0x20) {
+						escaped.append(String.format("\\u%04x", (int) c));
+					} else {
+						escaped.append(c);
+					}
+			}
+		}
+		return escaped.toString();
+	}
+
+	private long cpuNanos() {
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	private long allocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			final com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if (sunThreads.isThreadAllocatedMemorySupported()) {
+				return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a daemon reloads a file saved while a request was loading it
+ */
+public class DaemonTest {
+
+	private static final String TOOL = "daemon-test";
+
+	private static final long STARTUP_TIMEOUT = 60_000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String userHome;
+
+	@Before
+	public void setUserHome() throws IOException {
+		// keep the daemon token file out of the real user home
+		userHome = System.getProperty("user.home");
+		System.setProperty("user.home", folder.newFolder("home").getPath());
+	}
+
+	@After
+	public void restoreUserHome() {
+		System.setProperty("user.home", userHome);
+	}
+
+	@Test
+	public void reloadsFileSavedDuringRequest() throws Exception {
+		final File file = new File(folder.getRoot(), "model.ecore");
+		writeModel(file, "Original");
+
+		final List<String> classNames = Collections.synchronizedList(new ArrayList<>());
+		final int port = startDaemon((resourceSet, args) -> {
+			final Resource resource = resourceSet.getResource(URI.createFileURI(args[0]), true);
+			classNames.add(((EPackage) resource.getContents().get(0)).getEClassifiers().get(0).getName());
+			if (classNames.size() == 1) {
+				// the file is saved again after it was loaded, before the request ends
+				final long timeStamp = file.lastModified();
+				writeModel(file, "Edited");
+				// the file system may keep time stamps to the second only
+				assertTrue(file.setLastModified(timeStamp + 2_000));
+			}
+		});
+
+		Daemon.forward(TOOL, port, Collections.emptyList(), file.getAbsolutePath());
+		Daemon.forward(TOOL, port, Collections.emptyList(), file.getAbsolutePath());
+		assertEquals(Arrays.asList("Original", "Edited"), classNames);
+	}
+
+	private static void writeModel(File file, String className) throws IOException {
+		final String model =
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\"\n" +
+			"    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\"\n" +
+			"    name=\"model\" nsURI=\"http://opencaesar.io/test/model\" nsPrefix=\"model\">\n" +
+			"  <eClassifiers xsi:type=\"ecore:EClass\" name=\"" + className + "\"/>\n" +
+			"</ecore:EPackage>\n";
+		Files.write(file.toPath(), model.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Starts a daemon with the given handler on a free port, and waits until it has written its token file
+	 */
+	private static int startDaemon(Daemon.Handler handler) throws IOException, InterruptedException {
+		final int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		final Runnable setup = () -> Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().put("ecore", new EcoreResourceFactoryImpl());
+		final Thread daemon = new Thread(() -> new Daemon(TOOL, port, setup, handler).run(), TOOL);
+		daemon.setDaemon(true);
+		daemon.start();
+		final Path tokenFile = Daemon.getTokenFile(TOOL, port);
+		final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+		while (!Files.exists(tokenFile)) {
+			assertTrue("The daemon did not start", daemon.isAlive() && System.currentTimeMillis() < deadline);
+			Thread.sleep(100);
+		}
+		return port;
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests collecting the input files of a folder with symbolic links
+ */
+public class InputFileCollectorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void followsLinksAndSkipsLoops() throws IOException {
+		final Path shared = folder.newFolder("shared").toPath();
+		Files.createFile(shared.resolve("linked.xcore"));
+		Files.createFile(shared.resolve("other.xcore"));
+
+		final Path input = folder.newFolder("input").toPath();
+		Files.createDirectories(input.resolve("models"));
+		Files.createFile(input.resolve("models/base.xcore"));
+		Files.createSymbolicLink(input.resolve("models/linked.xcore"), shared.resolve("linked.xcore"));
+		Files.createSymbolicLink(input.resolve("library"), shared);
+		Files.createSymbolicLink(input.resolve("models/loop"), input.resolve("models"));
+		Files.createSymbolicLink(input.resolve("models/root"), input);
+
+		final List<File> files = new InputFileCollector(null, null).collect(input.toFile());
+		assertEquals(Arrays.asList(
+				"library/linked.xcore",
+				"library/other.xcore",
+				"models/base.xcore",
+				"models/linked.xcore"),
+				files.stream()
+						.map(file -> input.relativize(file.toPath()).toString().replace(File.separatorChar, '/'))
+						.collect(Collectors.toList()));
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xcore.XcoreStandaloneSetup;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that loading Xcore files in parallel gives the same models as loading them serially
+ */
+public class ParallelResourceLoaderTest {
+
+	private static final int FILES = 8;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setup() {
+		new XcoreStandaloneSetup().createInjectorAndDoEMFRegistration();
+	}
+
+	@Test
+	public void parallelLoadEqualsSerialLoad() throws IOException {
+		final List<File> files = createFiles();
+		final ResourceSet serialResourceSet = new ResourceSetImpl();
+		final Map<File, Resource> serial = new ParallelResourceLoader(1, null, new PhaseProfiler(false)).load(serialResourceSet, files);
+		for (int threads : new int[] { 2, 4, FILES }) {
+			final ResourceSet parallelResourceSet = new ResourceSetImpl();
+			final Map<File, Resource> parallel = new ParallelResourceLoader(threads, null, new PhaseProfiler(false)).load(parallelResourceSet, files);
+
+			assertEquals(new ArrayList<>(serial.keySet()), new ArrayList<>(parallel.keySet()));
+			assertTrue(EcoreUtil.UnresolvedProxyCrossReferencer.find(parallelResourceSet).isEmpty());
+			for (File file : files) {
+				final Resource serialResource = serial.get(file);
+				final Resource parallelResource = parallel.get(file);
+				assertEquals(parallelResourceSet, parallelResource.getResourceSet());
+				assertTrue(parallelResource.getErrors().isEmpty());
+				assertTrue("Different models for " + file + " with " + threads + " threads",
+					EcoreUtil.equals(getPackages(serialResource), getPackages(parallelResource)));
+			}
+		}
+	}
+
+	/**
+	 * Creates Xcore files where each package extends the classes of the previous one
+	 */
+	private List<File> createFiles() throws IOException {
+		final List<File> files = new ArrayList<>();
+		for (int i = 0; i < FILES; i++) {
+			final StringBuilder xcore = new StringBuilder();
+			xcore.append("package p").append(i).append("\n\n");
+			if (i > 0) {
+				xcore.append("import p").append(i - 1).append(".C").append(i - 1).append("\n\n");
+			}
+			xcore.append("class C").append(i);
+			if (i > 0) {
+				xcore.append(" extends C").append(i - 1);
+			}
+			xcore.append(" {\n");
+			xcore.append("\tString name").append(i).append("\n");
+			if (i > 0) {
+				xcore.append("\trefers C").append(i - 1).append("[] previous").append(i).append("\n");
+			}
+			xcore.append("}\n");
+			final File file = folder.newFile("p" + i + ".xcore");
+			Files.write(file.toPath(), xcore.toString().getBytes(StandardCharsets.UTF_8));
+			files.add(file);
+		}
+		return files;
+	}
+
+	private static List<EObject> getPackages(Resource resource) {
+		final List<EObject> packages = new ArrayList<>();
+		for (EObject object : resource.getContents()) {
+			if (object instanceof EPackage) {
+				packages.add(object);
+			}
+		}
+		return packages;
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.common;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the JSON report of the phase profiler
+ */
+public class PhaseProfilerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void escapesControlCharactersInReport() throws IOException {
+		final PhaseProfiler profiler = new PhaseProfiler(true);
+		try (PhaseProfiler.Timer timer = profiler.start("load", "models/a\tb\n\"c\"\\d\u0001.xcore")) {
+			// nothing to measure
+		}
+		final File report = new File(folder.getRoot(), "profile.json");
+		profiler.writeJson(report);
+
+		final String json = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+		assertTrue(json, json.contains("\"input\": \"models/a\\tb\\n\\\"c\\\"\\\\d\\u0001.xcore\""));
+		for (char c : json.toCharArray()) {
+			assertFalse("Unescaped control character " + (int) c, c < 0x20 && c != '\n');
+		}
+	}
+}
@@ -18,10 +18,31 @@
  */
 package io.opencaesar.ecore.graphql;
 
+import graphql.schema.GraphQLNamedType;
 import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.idl.SchemaParser;
 import graphql.schema.idl.SchemaPrinter;
+import graphql.schema.idl.TypeDefinitionRegistry;
+import graphql.schema.idl.UnExecutableSchemaGenerator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
 import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EClassifier;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
 import org.eclipse.emf.ecore.resource.Resource;
 
 /**
@@ -29,7 +50,12 @@ import org.eclipse.emf.ecore.resource.Resource;
  */
 public class Ecore2GraphQL {
 
-    final private Resource r;
+    /**
+     * The name of the document holding the whole schema, or its schema and Query definitions
+     */
+    public static final String SCHEMA = "schema";
+
+    final private Collection<Resource> resources;
 
     /**
      * Constructor
@@ -37,30 +63,63 @@ public class Ecore2GraphQL {
      * @param r the given Ecore Resource
      */
     public Ecore2GraphQL(Resource r) {
-        this.r = r;
+        this(Collections.singletonList(r));
+    }
+
+    /**
+     * Creates a generator analyzing several resources together,
+     * so the classifiers they share are visited and built once
+     * 
+     * @param resources the given Ecore Resources
+     */
+    public Ecore2GraphQL(Collection<Resource> resources) {
+        this.resources = resources;
     }
 
     final private Ecore2GraphQLVisitor v = new Ecore2GraphQLVisitor();
 
-    final private GraphQLSchema.Builder builder = GraphQLSchema.newSchema();
-    
     /**
-     * Analyzes the contents of the resource to build the GraphQL interface
+     * Analyzes the contents of the resources to build the GraphQL interface
      */
     public void analyze() {
-        for (TreeIterator<EObject> it = r.getAllContents(); it.hasNext(); ) {
-            EObject eo = it.next();
-            v.doSwitch(eo);
+        analyze(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Analyzes the contents of the resources to build the GraphQL interface,
+     * registering the classifiers first then building the fields of each class in parallel
+     * 
+     * @param pool the pool building the fields
+     */
+    public void analyze(ForkJoinPool pool) {
+        for (Resource r : resources) {
+            for (TreeIterator<EObject> it = r.getAllContents(); it.hasNext(); ) {
+                EObject eo = it.next();
+                v.register(eo);
+            }
         }
-        v.addBuilds(builder);
+        v.addFields(pool);
+        v.build();
     }
 
     /**
-     * Converts the Ecore resource to GraphQL
+     * Gets the visitor holding the analyzed types
+     * @return the visitor
+     */
+    Ecore2GraphQLVisitor getVisitor() {
+        return v;
+    }
+
+    /**
+     * Converts the Ecore resource to GraphQL by building a GraphQLSchema, which validates it,
+     * and printing it with graphql-java's SchemaPrinter
      * @return the GraphQL schema as a string
      */
     public String convert() {
-        final GraphQLSchema schema = builder.build();
+        final GraphQLSchema schema = GraphQLSchema.newSchema()
+                .query(v.getQueryType())
+                .additionalTypes(new LinkedHashSet<GraphQLType>(v.getTypes().values()))
+                .build();
         final SchemaPrinter.Options options =
                 SchemaPrinter.Options
                         .defaultOptions()
@@ -70,6 +129,96 @@ public class Ecore2GraphQL {
         return printer.print(schema);
     }
 
+    /**
+     * Converts the Ecore resource to GraphQL by writing the SDL of the analyzed types directly,
+     * instead of building and printing a GraphQLSchema like {@link #convert()}. The SDL is the same,
+     * but the schema is not validated (see {@link #validate(String...)}).
+     * @return the GraphQL schema as a string
+     */
+    public String convertSdl() {
+        final StringWriter out = new StringWriter();
+        try {
+            convertSdl(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
 
+    /**
+     * Converts the Ecore resource to GraphQL by writing the SDL of the analyzed types directly
+     * to the given writer (see {@link #convertSdl()})
+     * @param out the writer receiving the GraphQL schema
+     * @throws IOException when the schema cannot be written
+     */
+    public void convertSdl(Writer out) throws IOException {
+        final SdlWriter writer = new SdlWriter(out);
+        writer.writeSchemaDefinition(v.getQueryType());
+        writer.writeDirectiveDefinitions();
+        final List<GraphQLNamedType> types = new ArrayList<>(v.getTypes().values());
+        types.add(v.getQueryType());
+        writer.writeTypes(types);
+    }
 
+    /**
+     * Converts the Ecore resources to GraphQL, with one document per package holding the types
+     * of its classifiers, and a {@link #SCHEMA} document holding the schema and Query definitions.
+     * Together the documents define the same schema as {@link #convert()}, written like {@link #convertSdl()}.
+     * @return the GraphQL documents by name
+     * @throws RuntimeException when a package has the qualified name {@link #SCHEMA}, whose document would be overwritten
+     */
+    public Map<String, String> convertByPackage() {
+        final Map<EClassifier, GraphQLNamedType> types = v.getTypes();
+        final Map<String, List<GraphQLNamedType>> packageTypes = new LinkedHashMap<>();
+        for (EPackage p : v.getPackages()) {
+            final String name = getQualifiedName(p);
+            if (SCHEMA.equals(name)) {
+                throw new RuntimeException("Package " + p.getNsURI() + " cannot be converted to its own document since its name is reserved for the " + SCHEMA + " document");
+            }
+            final List<GraphQLNamedType> pTypes = packageTypes.computeIfAbsent(name, k -> new ArrayList<>());
+            for (EClassifier c : p.getEClassifiers()) {
+                final GraphQLNamedType type = types.get(c);
+                if (type != null) {
+                    pTypes.add(type);
+                }
+            }
+        }
+        final Map<String, String> documents = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, List<GraphQLNamedType>> entry : packageTypes.entrySet()) {
+                final StringWriter out = new StringWriter();
+                new SdlWriter(out).writeTypes(entry.getValue());
+                documents.put(entry.getKey(), out.toString());
+            }
+            final StringWriter out = new StringWriter();
+            final SdlWriter writer = new SdlWriter(out);
+            writer.writeSchemaDefinition(v.getQueryType());
+            writer.writeDirectiveDefinitions();
+            writer.writeType(v.getQueryType());
+            documents.put(SCHEMA, out.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return documents;
+    }
+
+    /**
+     * Validates GraphQL documents that together define a schema, by parsing them and building
+     * a non executable schema from them, which runs the full graphql-java schema validation
+     * @param documents the GraphQL documents
+     * @throws graphql.GraphQLException when the documents do not define a valid schema
+     */
+    public static void validate(String... documents) {
+        final SchemaParser parser = new SchemaParser();
+        final TypeDefinitionRegistry registry = new TypeDefinitionRegistry();
+        for (String document : documents) {
+            registry.merge(parser.parse(document));
+        }
+        UnExecutableSchemaGenerator.makeUnExecutableSchema(registry);
+    }
+
+    private static String getQualifiedName(EPackage p) {
+        final EPackage parent = p.getESuperPackage();
+        return (parent != null) ? getQualifiedName(parent) + "." + p.getName() : p.getName();
+    }
 }
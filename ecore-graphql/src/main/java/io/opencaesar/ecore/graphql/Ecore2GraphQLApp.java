@@ -18,19 +18,21 @@
  */
 package io.opencaesar.ecore.graphql;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Appender;
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
-import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
@@ -40,56 +42,163 @@ import com.beust.jcommander.IParameterValidator;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
-import com.google.common.base.Objects;
+import com.beust.jcommander.validators.PositiveInteger;
+import com.google.inject.Injector;
+
+import io.opencaesar.ecore.common.AppOptions;
+import io.opencaesar.ecore.common.Daemon;
+import io.opencaesar.ecore.common.InputFileCollector;
+import io.opencaesar.ecore.common.ModelCache;
+import io.opencaesar.ecore.common.OutputStage;
+import io.opencaesar.ecore.common.ParallelResourceLoader;
+import io.opencaesar.ecore.common.PhaseProfiler;
 
 /**
  * An app to generate GraphQL interface from Ecore files
  */
 public class Ecore2GraphQLApp {
 
+    /**
+     * The name of the tool, which names its daemon token file
+     */
+    private static final String TOOL = "ecore2graphql";
+
+    /**
+     * The options whose values are paths, resolved by the client before forwarding them to a daemon
+     */
+    private static final List<String> PATH_OPTIONS = Arrays.asList("--input", "-i", "--output", "-o", "--model-cache", "--profile-report");
+
     @Parameter(
             names = {"--input", "-i"},
-            description = "Path of Ecore input folder (Required)",
+            description = "Path of Ecore input folder (Required, unless --daemon or --connect is used)",
             validateWith = InputFolderPath.class,
-            required = true,
             order = 1)
     private String inputFolderPath = null;
 
     @Parameter(
             names = {"--output", "-o"},
-            description = "Location of the GraphQL output folder (Required)",
+            description = "Location of the GraphQL output folder (Required, unless --daemon or --connect is used)",
             validateWith = OutputFolderPath.class,
-            required = true,
             order = 2)
     private String outputFolderPath = ".";
 
+    @Parameter(
+            names = {"--include"},
+            description = "Glob pattern of the input files to include, relative to the input folder (Optional, repeatable, defaults to **.xcore and **.genmodel)",
+            order = 3)
+    private List<String> includes = null;
+
+    @Parameter(
+            names = {"--exclude"},
+            description = "Glob pattern of the input files and folders to exclude, relative to the input folder (Optional, repeatable)",
+            order = 4)
+    private List<String> excludes = null;
+
+    @Parameter(
+            names = {"--threads"},
+            description = "Maximum number of input files parsed in parallel (Optional, defaults to 1)",
+            validateWith = PositiveInteger.class,
+            order = 5)
+    private int threads = 1;
+
+    @Parameter(
+            names = {"--model-cache"},
+            description = "Location of a folder caching loaded Xcore models across runs (Optional)",
+            validateWith = OutputFolderPath.class,
+            order = 6)
+    private String modelCacheFolderPath = null;
+
+    @Parameter(
+            names = {"--stream"},
+            description = "Processes the inputs one at a time and unloads the models no longer needed, to bound the heap (Optional)",
+            order = 7)
+    private boolean stream;
+
+    @Parameter(
+            names = {"--merge"},
+            description = "Analyzes all the inputs together and writes either one combined schema or one schema per package: none, combined or package (Optional, defaults to none)",
+            validateWith = MergeMode.class,
+            order = 8)
+    private String merge = "none";
+
+    @Parameter(
+            names = {"--validate"},
+            description = "Validates the written schemas by parsing them back with graphql-java, unless --schema-printer already validated them (Optional)",
+            order = 9)
+    private boolean validate;
+
+    @Parameter(
+            names = {"--schema-printer"},
+            description = "Builds and validates each schema then prints it with graphql-java, instead of writing its SDL directly, which is faster (Optional, not applicable to --merge package)",
+            order = 10)
+    private boolean schemaPrinter;
+
+    @Parameter(
+            names = {"--profile"},
+            description = "Logs the wall time, CPU time and allocated bytes of each phase and input file (Optional)",
+            order = 11)
+    private boolean profile;
+
+    @Parameter(
+            names = {"--profile-report"},
+            description = "Location of a JSON file to write the profile to, which implies --profile (Optional)",
+            order = 12)
+    private String profileReportPath = null;
+
+    @Parameter(
+            names = {"--daemon"},
+            description = "Starts a daemon that serves requests on the given loopback port, authenticated by a token written to ~/.ecore-tools (Optional)",
+            validateWith = PositiveInteger.class,
+            order = 13)
+    private Integer daemonPort = null;
+
+    @Parameter(
+            names = {"--connect"},
+            description = "Forwards the request to a daemon listening on the given loopback port (Optional)",
+            validateWith = PositiveInteger.class,
+            order = 14)
+    private Integer connectPort = null;
+
     @Parameter(
             names = {"--debug", "-d"},
             description = "Shows debug logging statements",
-            order = 3)
+            order = 15)
     private boolean debug;
 
     @Parameter(
             names = {"--help", "-h"},
             description = "Displays summary of options",
             help = true,
-            order = 4)
+            order = 16)
     private boolean help;
 
     @Parameter(
             names = {"--version", "-v"},
             description = "Displays app version",
             help = true,
-            order = 5)
+            order = 17)
     private boolean version;
 
     private final Logger LOGGER = LogManager.getLogger(Ecore2GraphQLApp.class);
 
+    private static Injector injector;
+
+    private ResourceSet inputResourceSet = null;
+
     /**
      * Default constructor
      */
     public Ecore2GraphQLApp() {
     }
+
+    /**
+     * Creates an app that loads its inputs in the given resource set
+     *
+     * @param inputResourceSet The resource set kept by the daemon across requests
+     */
+    Ecore2GraphQLApp(ResourceSet inputResourceSet) {
+        this.inputResourceSet = inputResourceSet;
+    }
     
     /**
      * The main entry point to the app 
@@ -112,15 +221,38 @@ public class Ecore2GraphQLApp {
             final Appender appender = LogManager.getRootLogger().getAppender("stdout");
             ((AppenderSkeleton) appender).setThreshold(Level.DEBUG);
         }
-        if (app.inputFolderPath.endsWith(File.separator)) {
-            app.inputFolderPath = app.inputFolderPath.substring(0, app.inputFolderPath.length() - 1);
+        if (app.daemonPort != null) {
+            new Daemon(TOOL, app.daemonPort, Ecore2GraphQLApp::setup, (resourceSet, requestArgs) -> {
+                final Ecore2GraphQLApp request = new Ecore2GraphQLApp(resourceSet);
+                final JCommander requestBuilder = JCommander.newBuilder().addObject(request).build();
+                requestBuilder.parse(requestArgs);
+                request.prepare(requestBuilder);
+                request.run();
+            }).run();
+            return;
         }
-        if (app.outputFolderPath.endsWith(File.separator)) {
-            app.outputFolderPath = app.outputFolderPath.substring(0, app.outputFolderPath.length() - 1);
+        if (app.connectPort != null) {
+            Daemon.forward(TOOL, app.connectPort, PATH_OPTIONS, args);
+            return;
         }
+        app.prepare(builder);
         app.run();
     }
 
+    /**
+     * Checks the required and conflicting options and normalizes the folder paths of a run
+     * 
+     * @param builder The JCommander that parsed the options of the run
+     */
+    private void prepare(JCommander builder) {
+        AppOptions.require(builder, "--input", "--output");
+        if (stream && !"none".equals(merge)) {
+            throw new ParameterException("Parameter --stream cannot be combined with --merge " + merge);
+        }
+        inputFolderPath = AppOptions.normalizeFolderPath(inputFolderPath);
+        outputFolderPath = AppOptions.normalizeFolderPath(outputFolderPath);
+    }
+
     /**
      * The run method
      */
@@ -131,79 +263,121 @@ public class Ecore2GraphQLApp {
         LOGGER.info("=================================================================");
         LOGGER.info("Input Folder= " + inputFolderPath);
         LOGGER.info("Output Folder= " + outputFolderPath);
+        if (modelCacheFolderPath != null) {
+            LOGGER.info("Model Cache Folder= " + modelCacheFolderPath);
+        }
 
+        final PhaseProfiler profiler = new PhaseProfiler(profile || profileReportPath != null);
         final File inputFolder = new File(this.inputFolderPath);
-        final Collection<File> inputFiles = this.collectInputFiles(inputFolder);
-
-		XcoreStandaloneSetup.doSetup();
-		final ResourceSet inputResourceSet = new ResourceSetImpl();
-
-        final HashMap<File, String> outputFiles = new HashMap<>();
-
-        for (final File inputFile : inputFiles) {
-            final URI inputURI = URI.createFileURI(inputFile.getAbsolutePath());
-            final Resource inputResource = inputResourceSet.getResource(inputURI, true);
-            if ((inputResource != null)) {
-                this.LOGGER.info(("Reading: " + inputURI));
-                String relativePath = this.outputFolderPath +
-                        File.separator +
-                        inputFolder.toURI().relativize(inputFile.toURI()).getPath();
-                final File outputFile =
-                        new File(relativePath.substring(0, relativePath.lastIndexOf(".") + 1) + "graphqls");
-                final Ecore2GraphQL e2g = new Ecore2GraphQL(inputResource);
-                e2g.analyze();
-                outputFiles.put(outputFile, e2g.convert());
-            }
+        final List<File> inputFiles;
+        try (PhaseProfiler.Timer timer = profiler.start("discover")) {
+            inputFiles = new InputFileCollector(includes, excludes).collect(inputFolder);
         }
 
-        outputFiles.forEach((File outputFile, String result) -> {
-            BufferedWriter out = null;
-            try {
-                //noinspection ResultOfMethodCallIgnored
-                outputFile.getParentFile().mkdirs();
-                final String filePath = outputFile.getCanonicalPath();
-                out = new BufferedWriter(new FileWriter(filePath));
-                this.LOGGER.info(("Saving: " + filePath));
-                out.write(result);
-            } catch (final Exception e) {
-                this.LOGGER.error("Error saving "+outputFile+" : "+e.getMessage(), e);
+        try (PhaseProfiler.Timer timer = profiler.start("setup")) {
+            setup();
+        }
+        final ResourceSet inputResourceSet = (this.inputResourceSet != null) ? this.inputResourceSet : new ResourceSetImpl();
+        final ModelCache modelCache = (modelCacheFolderPath != null) ? new ModelCache(Paths.get(modelCacheFolderPath), getAppVersion()) : null;
+
+        final ParallelResourceLoader loader = new ParallelResourceLoader(threads, modelCache, profiler);
+
+        try (final OutputStage outputStage = new OutputStage(Runtime.getRuntime().availableProcessors(), profiler)) {
+            if (!"none".equals(merge)) {
+                final Map<File, Resource> inputResources = loader.load(inputResourceSet, inputFiles);
+                final List<Resource> resources = new ArrayList<>();
+                for (final File inputFile : inputFiles) {
+                    final Resource inputResource = inputResources.get(inputFile);
+                    if ((inputResource != null)) {
+                        resources.add(inputResource);
+                    }
+                }
+                generate(resources, outputStage, profiler);
+            } else if (stream) {
+                new StreamingScheduler(inputResourceSet, loader).run(inputFiles, (inputFile, inputResource) ->
+                        generate(inputFolder, inputFile, inputResource, outputStage, profiler));
+            } else {
+                final Map<File, Resource> inputResources = loader.load(inputResourceSet, inputFiles);
+                for (final File inputFile : inputFiles) {
+                    final Resource inputResource = inputResources.get(inputFile);
+                    if ((inputResource != null)) {
+                        generate(inputFolder, inputFile, inputResource, outputStage, profiler);
+                    }
+                }
             }
+            outputStage.awaitAll();
+        }
+
+        profiler.report();
+        if (profileReportPath != null) {
             try {
-                if (out != null) {
-                    out.close();
-                }
-            } catch (Exception e) {
-                this.LOGGER.error("Error closing "+outputFile+" : "+e.getMessage(), e);
+                profiler.writeJson(new File(profileReportPath));
+            } catch (IOException e) {
+                this.LOGGER.error("Error saving " + profileReportPath + " : " + e.getMessage(), e);
             }
-        });
+        }
 
         this.LOGGER.info("=================================================================");
         this.LOGGER.info("                          E N D");
         this.LOGGER.info("=================================================================");
     }
 
-    private Collection<File> collectInputFiles(final File directory) {
-        final ArrayList<File> files = new ArrayList<>();
-        for (final File file : java.util.Objects.requireNonNull(directory.listFiles())) {
-            if (file.isFile()) {
-                final String ext = this.getFileExtension(file);
-                if ((Objects.equal(ext, "genmodel") || Objects.equal(ext, "xcore"))) {
-                    files.add(file);
-                }
-            } else if (file.isDirectory()) {
-                files.addAll(this.collectInputFiles(file));
+    private void generate(final File inputFolder, final File inputFile, final Resource inputResource, final OutputStage outputStage, final PhaseProfiler profiler) {
+        final String input = inputFolder.toURI().relativize(inputFile.toURI()).getPath();
+        String relativePath = this.outputFolderPath +
+                File.separator +
+                input;
+        final File outputFile =
+                new File(relativePath.substring(0, relativePath.lastIndexOf(".") + 1) + "graphqls");
+        final Ecore2GraphQL e2g = new Ecore2GraphQL(inputResource);
+        try (PhaseProfiler.Timer timer = profiler.start("analyze", input)) {
+            e2g.analyze();
+        }
+        final String result;
+        try (PhaseProfiler.Timer timer = profiler.start("convert", input)) {
+            result = schemaPrinter ? e2g.convert() : e2g.convertSdl();
+        }
+        if (validate && !schemaPrinter) {
+            try (PhaseProfiler.Timer timer = profiler.start("validate", input)) {
+                Ecore2GraphQL.validate(result);
             }
         }
-        return files;
+        outputStage.submit(outputFile.toPath(), result.getBytes(StandardCharsets.UTF_8));
     }
 
-    private String getFileExtension(final File file) {
-        final String fileName = file.getName();
-        if (fileName.lastIndexOf(".") != (-1)) {
-            return fileName.substring(fileName.lastIndexOf(".") + 1);
-        } else {
-            return "";
+    private void generate(final List<Resource> inputResources, final OutputStage outputStage, final PhaseProfiler profiler) {
+        final Ecore2GraphQL e2g = new Ecore2GraphQL(inputResources);
+        try (PhaseProfiler.Timer timer = profiler.start("analyze")) {
+            e2g.analyze();
+        }
+        final boolean printed = schemaPrinter && !"package".equals(merge);
+        final Map<String, String> results;
+        try (PhaseProfiler.Timer timer = profiler.start("convert")) {
+            results = "package".equals(merge) ?
+                    e2g.convertByPackage() :
+                    Collections.singletonMap(Ecore2GraphQL.SCHEMA, printed ? e2g.convert() : e2g.convertSdl());
+        }
+        if (validate && !printed) {
+            try (PhaseProfiler.Timer timer = profiler.start("validate")) {
+                Ecore2GraphQL.validate(results.values().toArray(new String[0]));
+            }
+        }
+        results.forEach((name, result) -> {
+            final File outputFile = new File(this.outputFolderPath + File.separator + name + ".graphqls");
+            outputStage.submit(outputFile.toPath(), result.getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+    /**
+     * Sets up Xcore once per class loader, so that repeated runs in the same JVM reuse the same injector
+     *
+     * @return The Xcore injector
+     */
+    public static synchronized Injector setup() {
+        if (injector == null) {
+            injector = new XcoreStandaloneSetup().createInjectorAndDoEMFRegistration();
         }
+        return injector;
     }
 
     /**
@@ -258,4 +432,23 @@ public class Ecore2GraphQLApp {
             }
         }
     }
+
+    /**
+     * A validator for the merge mode
+     */
+    public static class MergeMode implements IParameterValidator {
+
+        /**
+         * Default constructor
+         */
+        public MergeMode() {
+        }
+
+        @Override
+        public void validate(final String name, final String value) throws ParameterException {
+            if (!"none".equals(value) && !"combined".equals(value) && !"package".equals(value)) {
+                throw new ParameterException("Parameter " + name + " should be one of none, combined or package: " + value);
+            }
+        }
+    }
 }
@@ -0,0 +1,284 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.graphql;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.util.ECollections;
+import org.eclipse.emf.common.util.Enumerator;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EOperation;
+import org.eclipse.emf.ecore.EParameter;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.ETypedElement;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.DataFetcherResult;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.FieldCoordinates;
+import graphql.schema.GraphQLCodeRegistry;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInterfaceType;
+import graphql.schema.GraphQLNamedType;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.TypeResolver;
+
+/**
+ * Runs GraphQL queries in process over EMF instance models, using an executable schema
+ * built from the same analysis as the generated GraphQL schema.
+ * 
+ * The fields of object types are fetched with eGet on the structural feature of the same name,
+ * or by invoking the operation of the same name, and the allXxx fields of the Query type list
+ * the instances of their metaclass found in the queried resource set. Abstract types are
+ * resolved to the object type named after the EClass of each object.
+ * 
+ * An operation that cannot be invoked, like those of dynamic EObjects without an invocation
+ * delegate, yields a GraphQL error for its field instead of failing the whole query.
+ * 
+ * A runtime can be shared: each query walks the contents of its resource set once.
+ */
+public class Ecore2GraphQLRuntime {
+
+    private final GraphQLSchema schema;
+
+    private final GraphQL graphQL;
+
+    private final Map<EClass, Map<String, EOperation>> operations = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a runtime for the instances of the given metamodels
+     * 
+     * @param metamodels the Ecore Resources of the metamodels
+     */
+    public Ecore2GraphQLRuntime(Collection<Resource> metamodels) {
+        final Ecore2GraphQL e2g = new Ecore2GraphQL(metamodels);
+        e2g.analyze();
+        final Ecore2GraphQLVisitor v = e2g.getVisitor();
+
+        final GraphQLCodeRegistry.Builder codeRegistry = GraphQLCodeRegistry.newCodeRegistry();
+        final DataFetcher<Object> featureFetcher = this::getFeature;
+        final TypeResolver typeResolver = env -> {
+            if (env.getObject() instanceof EObject) {
+                return env.getSchema().getObjectType(((EObject) env.getObject()).eClass().getName());
+            }
+            return null;
+        };
+        for (GraphQLNamedType type : v.getTypes().values()) {
+            if (type instanceof GraphQLObjectType) {
+                for (GraphQLFieldDefinition field : ((GraphQLObjectType) type).getFieldDefinitions()) {
+                    codeRegistry.dataFetcher(FieldCoordinates.coordinates(type.getName(), field.getName()), featureFetcher);
+                }
+            } else if (type instanceof GraphQLInterfaceType) {
+                codeRegistry.typeResolver(type.getName(), typeResolver);
+            }
+        }
+        final GraphQLObjectType queryType = v.getQueryType();
+        v.getRootQueries().forEach((name, eClass) -> {
+            final DataFetcher<Object> rootFetcher = env -> ((InstanceIndex) env.getSource()).getInstances(eClass);
+            codeRegistry.dataFetcher(FieldCoordinates.coordinates(queryType.getName(), name), rootFetcher);
+        });
+
+        this.schema = GraphQLSchema.newSchema()
+                .query(queryType)
+                .additionalTypes(new HashSet<GraphQLType>(v.getTypes().values()))
+                .codeRegistry(codeRegistry.build())
+                .build();
+        this.graphQL = GraphQL.newGraphQL(schema).build();
+    }
+
+    /**
+     * Gets the executable schema
+     * 
+     * @return the schema
+     */
+    public GraphQLSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Runs a query over the instance models loaded in the given resource set
+     * 
+     * @param query the GraphQL query
+     * @param instances the resource set holding the instance models
+     * @return the result of the query
+     */
+    public ExecutionResult execute(String query, ResourceSet instances) {
+        return execute(query, Collections.emptyMap(), instances);
+    }
+
+    /**
+     * Runs a query with variables over the instance models loaded in the given resource set
+     * 
+     * @param query the GraphQL query
+     * @param variables the values of the query variables
+     * @param instances the resource set holding the instance models
+     * @return the result of the query
+     */
+    public ExecutionResult execute(String query, Map<String, Object> variables, ResourceSet instances) {
+        return graphQL.execute(ExecutionInput.newExecutionInput()
+                .query(query)
+                .variables(variables)
+                .root(new InstanceIndex(instances))
+                .build());
+    }
+
+    private Object getFeature(DataFetchingEnvironment env) throws Exception {
+        final EObject eo = env.getSource();
+        final String name = env.getFieldDefinition().getName();
+        final EStructuralFeature feature = eo.eClass().getEStructuralFeature(name);
+        if (feature != null) {
+            return toGraphQL(feature, eo.eGet(feature));
+        }
+        final EOperation operation = getOperation(eo.eClass(), name);
+        if (operation != null) {
+            final List<Object> arguments = new ArrayList<>();
+            for (EParameter parameter : operation.getEParameters()) {
+                arguments.add(toEcore(parameter, env.getArguments().get(parameter.getName())));
+            }
+            final Object result;
+            try {
+                result = eo.eInvoke(operation, ECollections.asEList(arguments));
+            } catch (InvocationTargetException | RuntimeException e) {
+                // e.g. the operations of dynamic EObjects have no body to invoke unless an invocation delegate provides one
+                final Throwable cause = (e instanceof InvocationTargetException && e.getCause() != null) ? e.getCause() : e;
+                return DataFetcherResult.newResult()
+                        .error(GraphqlErrorBuilder.newError(env)
+                                .message("Cannot invoke EOperation %s::%s: %s", operation.getEContainingClass().getName(), name, cause)
+                                .build())
+                        .build();
+            }
+            return toGraphQL(operation, result);
+        }
+        return null;
+    }
+
+    private EOperation getOperation(EClass eClass, String name) {
+        return operations.computeIfAbsent(eClass, c -> {
+            final Map<String, EOperation> byName = new HashMap<>();
+            for (EOperation o : c.getEAllOperations()) {
+                final EOperation override = c.getOverride(o);
+                byName.putIfAbsent(o.getName(), (override != null) ? override : o);
+            }
+            return byName;
+        }).get(name);
+    }
+
+    /**
+     * Converts Ecore values to GraphQL values: the enum types of the schema take the literals as values
+     */
+    private static Object toGraphQL(ETypedElement element, Object value) {
+        if (!(element.getEType() instanceof EEnum)) {
+            return value;
+        }
+        if (value instanceof Collection<?>) {
+            final List<Object> values = new ArrayList<>();
+            for (Object v : (Collection<?>) value) {
+                values.add(toGraphQL(element, v));
+            }
+            return values;
+        }
+        return (value instanceof Enumerator) ? ((Enumerator) value).getLiteral() : value;
+    }
+
+    /**
+     * Converts GraphQL argument values to Ecore values, by way of their literal when their types differ
+     */
+    private static Object toEcore(EParameter parameter, Object value) {
+        if (value == null || !(parameter.getEType() instanceof EDataType)) {
+            return value;
+        }
+        if (value instanceof Collection<?>) {
+            final List<Object> values = new ArrayList<>();
+            for (Object v : (Collection<?>) value) {
+                values.add(toEcore(parameter, v));
+            }
+            return ECollections.asEList(values);
+        }
+        final EDataType dataType = (EDataType) parameter.getEType();
+        return dataType.isInstance(value) ? value : EcoreUtil.createFromString(dataType, value.toString());
+    }
+
+    /**
+     * The objects of a resource set grouped by EClass and by each of its super types, in content order.
+     * 
+     * EClasses are identified by the nsURI of their package and their name rather than by identity,
+     * since the instance models may use another copy of the metamodels than the runtime, e.g. one
+     * loaded in another resource set or registered by nsURI.
+     */
+    private static class InstanceIndex {
+
+        private final Map<String, List<EObject>> instances = new HashMap<>();
+
+        private InstanceIndex(ResourceSet resourceSet) {
+            final Map<EClass, List<List<EObject>>> listsByClass = new HashMap<>();
+            for (TreeIterator<Notifier> it = resourceSet.getAllContents(); it.hasNext(); ) {
+                final Notifier n = it.next();
+                if (n instanceof EObject) {
+                    final EObject eo = (EObject) n;
+                    for (List<EObject> list : listsByClass.computeIfAbsent(eo.eClass(), this::getLists)) {
+                        list.add(eo);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Gets the lists of the instances of the given EClass and of each of its super types
+         */
+        private List<List<EObject>> getLists(EClass eClass) {
+            final List<List<EObject>> lists = new ArrayList<>();
+            lists.add(instances.computeIfAbsent(getKey(eClass), k -> new ArrayList<>()));
+            for (EClass sup : eClass.getEAllSuperTypes()) {
+                lists.add(instances.computeIfAbsent(getKey(sup), k -> new ArrayList<>()));
+            }
+            return lists;
+        }
+
+        private List<EObject> getInstances(EClass eClass) {
+            return instances.getOrDefault(getKey(eClass), Collections.emptyList());
+        }
+
+        private static String getKey(EClass eClass) {
+            final String nsURI = (eClass.getEPackage() != null) ? eClass.getEPackage().getNsURI() : null;
+            return nsURI + "#" + eClass.getName();
+        }
+    }
+}
@@ -19,15 +19,20 @@
 package io.opencaesar.ecore.graphql;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -44,6 +49,7 @@ import org.eclipse.emf.ecore.EOperation;
 import org.eclipse.emf.ecore.EPackage;
 import org.eclipse.emf.ecore.EParameter;
 import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.ETypeParameter;
 import org.eclipse.emf.ecore.ETypedElement;
 import org.eclipse.emf.ecore.util.EcoreSwitch;
@@ -59,11 +65,11 @@ import graphql.schema.GraphQLFieldDefinition;
 import graphql.schema.GraphQLInputType;
 import graphql.schema.GraphQLInterfaceType;
 import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNamedType;
 import graphql.schema.GraphQLNonNull;
 import graphql.schema.GraphQLObjectType;
 import graphql.schema.GraphQLOutputType;
 import graphql.schema.GraphQLScalarType;
-import graphql.schema.GraphQLSchema;
 import graphql.schema.GraphQLTypeReference;
 import graphql.schema.TypeResolver;
 
@@ -79,14 +85,19 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
     private final Map<EClass, GraphQLInterfaceType.Builder> interfaceBuilders = new HashMap<>();
     private final Map<EClass, GraphQLObjectType.Builder> objectBuilders = new HashMap<>();
     private final Map<EClass, List<GraphQLFieldDefinition>> fields = new HashMap<>();
+    private final Map<EClass, Map<String, GraphQLFieldDefinition>> inheritedFields = new HashMap<>();
 
     private final Map<EClass, GraphQLInterfaceType> interfaceTypes = new HashMap<>();
     private final Map<EClass, GraphQLObjectType> objectTypes = new HashMap<>();
+    private final Map<EClassifier, GraphQLNamedType> types = new HashMap<>();
+    private GraphQLObjectType queryType;
+    private final Map<String, EClass> rootQueries = new LinkedHashMap<>();
 
-    private final Set<EPackage> packages = new HashSet<>();
+    private final Set<EPackage> packages = new LinkedHashSet<>();
 
     private final Set<EClass> allMetaclasses = new HashSet<>();
     private final Set<EClass> containedMetaclasses = new HashSet<>();
+    private final List<EClass> visitedMetaclasses = new ArrayList<>();
 
     private final TypeResolver typeResolver = env -> {
         if (env.getObject() instanceof EObject) {
@@ -99,6 +110,85 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
     public Ecore2GraphQLVisitor() {
     }
 
+    /**
+     * The fields built for one metaclass by a task of the parallel analysis phase
+     */
+    private static class ClassFields {
+        private final Map<ETypedElement, GraphQLFieldDefinition> fields = new LinkedHashMap<>();
+        private final Set<EClass> contained = new HashSet<>();
+    }
+
+    /**
+     * First phase of the analysis: registers the packages and classifiers of the given object,
+     * leaving its structural features and operations to {@link #addFields(ForkJoinPool)}.
+     * <p>
+     * EMF resolves proxies, caches derived features and creates empty lists on first access,
+     * so this phase makes every such first access the second phase relies on: the types of
+     * typed elements with their type parameters and, for references, their super types,
+     * the reference types, the type parameters of classes and operations and the annotations
+     * of operations. Once all objects are registered the second phase only reads the model,
+     * which must not be modified until {@link #addFields(ForkJoinPool)} returns.
+     *
+     * @param eo an object of the analyzed resource, in containment order
+     */
+    public void register(@NotNull EObject eo) {
+        if (eo instanceof ETypedElement) {
+            EClassifier t = ((ETypedElement) eo).getEType();
+            if (null != t)
+                t.getETypeParameters();
+            if (eo instanceof EReference) {
+                EClass rt = ((EReference) eo).getEReferenceType();
+                if (null != rt)
+                    rt.getEAllSuperTypes();
+            }
+        }
+        if (eo instanceof EOperation) {
+            ((EOperation) eo).getETypeParameters();
+            ((EOperation) eo).getEAnnotations();
+        }
+        if (eo instanceof EClass) {
+            ((EClass) eo).getETypeParameters();
+            ((EClass) eo).getEAllSuperTypes();
+            visitedMetaclasses.add((EClass) eo);
+        }
+        if (!(eo instanceof EStructuralFeature) && !(eo instanceof EOperation))
+            doSwitch(eo);
+    }
+
+    /**
+     * Second phase of the analysis: builds the fields of every registered metaclass
+     * as one task per metaclass on the given pool, then adds them in registration order
+     * so the result is the same as visiting every object with {@link #doSwitch(EObject)}.
+     *
+     * @param pool the pool running the tasks
+     */
+    public void addFields(@NotNull ForkJoinPool pool) {
+        final Callable<List<ClassFields>> task = () -> visitedMetaclasses.parallelStream()
+                .map(this::buildFields)
+                .collect(Collectors.toList());
+        final List<ClassFields> results = pool.submit(task).join();
+        for (ClassFields result : results) {
+            containedMetaclasses.addAll(result.contained);
+            result.fields.forEach(this::addField);
+        }
+    }
+
+    private ClassFields buildFields(@NotNull EClass c) {
+        ClassFields result = new ClassFields();
+        for (EObject eo : c.eContents()) {
+            if (eo instanceof EAttribute) {
+                result.fields.put((EAttribute) eo, buildAttributeField((EAttribute) eo));
+            } else if (eo instanceof EReference) {
+                result.fields.put((EReference) eo, buildReferenceField((EReference) eo, result.contained));
+            } else if (eo instanceof EOperation) {
+                GraphQLFieldDefinition f = buildOperationField((EOperation) eo);
+                if (null != f)
+                    result.fields.put((EOperation) eo, f);
+            }
+        }
+        return result;
+    }
+
     @Override
     public EObject caseEPackage(@NotNull EPackage p) {
         LOGGER.debug("EPackage: " + p.getName());
@@ -187,6 +277,11 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
 
     @Override
     public EObject caseEAttribute(@NotNull EAttribute a) {
+        addField(a, buildAttributeField(a));
+        return a;
+    }
+
+    private GraphQLFieldDefinition buildAttributeField(@NotNull EAttribute a) {
         GraphQLFieldDefinition.Builder fb = GraphQLFieldDefinition.newFieldDefinition();
         fb.name(a.getName());
 
@@ -197,27 +292,16 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
         GraphQLOutputType qt = referenceClassifierOutputType(dt);
         updateMultiplicity(fb, a, qt);
 
-        GraphQLFieldDefinition f = fb.build();
-
-        List<GraphQLFieldDefinition> fs = fields.get(c);
-        Assert.assertTrue(
-                null != fs,
-                () -> "EAttribute: " + c.getName() + "::" + a.getName() + " -- missing fields for " + c.getName());
-        fs.add(f);
-
-        GraphQLInterfaceType.Builder ib = interfaceBuilders.get(c);
-        if (null != ib)
-            ib.field(f);
-
-        GraphQLObjectType.Builder ob = objectBuilders.get(c);
-        if (null != ob)
-            ob.field(f);
-
-        return a;
+        return fb.build();
     }
 
     @Override
     public EObject caseEReference(@NotNull EReference r) {
+        addField(r, buildReferenceField(r, containedMetaclasses));
+        return r;
+    }
+
+    private GraphQLFieldDefinition buildReferenceField(@NotNull EReference r, Set<EClass> contained) {
         GraphQLFieldDefinition.Builder fb = GraphQLFieldDefinition.newFieldDefinition();
         fb.name(r.getName());
 
@@ -226,8 +310,8 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
 
         EClass rt = r.getEReferenceType();
         if (r.isContainment()) {
-            containedMetaclasses.add(rt);
-            containedMetaclasses.addAll(rt.getEAllSuperTypes().stream().filter(ec -> !ec.isAbstract()).collect(Collectors.toList()));
+            contained.add(rt);
+            contained.addAll(rt.getEAllSuperTypes().stream().filter(ec -> !ec.isAbstract()).collect(Collectors.toList()));
         }
 
         GraphQLOutputType qt = referenceClassifierOutputType(rt);
@@ -237,47 +321,38 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
 //        }
         updateMultiplicity(fb, r, qt);
 
-        GraphQLFieldDefinition f = fb.build();
-
-        List<GraphQLFieldDefinition> fs = fields.get(c);
-        Assert.assertTrue(
-                null != fs,
-                () -> "EReference: " + c.getName() + "::" + r.getName() + " -- missing fields for " + c.getName());
-        fs.add(f);
-
-        GraphQLInterfaceType.Builder ib = interfaceBuilders.get(c);
-        if (null != ib)
-            ib.field(f);
-
-        GraphQLObjectType.Builder ob = objectBuilders.get(c);
-        if (null != ob)
-            ob.field(f);
-
-        return r;
+        return fb.build();
     }
 
     @Override
     public EObject caseEOperation(@NotNull EOperation o) {
+        GraphQLFieldDefinition f = buildOperationField(o);
+        if (null != f)
+            addField(o, f);
+        return o;
+    }
+
+    private GraphQLFieldDefinition buildOperationField(@NotNull EOperation o) {
         EClass c = o.getEContainingClass();
 
         String fieldName = o.getName();
         EAnnotation a = o.getEAnnotation("http://io.opencaesar.oml/graphql");
         if (null != a && a.getDetails().containsKey("replaceAs")) {
             fieldName = a.getDetails().get("replaceAs");
-            return o;
+            return null;
         }
 
         EList<ETypeParameter> typeParameters = o.getETypeParameters();
         if (!typeParameters.isEmpty()) {
             LOGGER.warn("EOperation: " + c.getName() + "::" + o.getName() + " -- unsupported case with type parameters!");
-            return o;
+            return null;
         }
 
         EClassifier t = o.getEType();
         EList<ETypeParameter> tps = t.getETypeParameters();
         if (!tps.isEmpty()) {
             LOGGER.warn("EOperation: " + c.getName() + "::" + o.getName() + " -- unsupported case with return type parameters!");
-            return o;
+            return null;
         }
 
         GraphQLFieldDefinition.Builder fb = GraphQLFieldDefinition.newFieldDefinition();
@@ -297,7 +372,7 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
             EList<ETypeParameter> ptps = pt.getETypeParameters();
             if (!ptps.isEmpty()) {
                 LOGGER.warn("EOperation: " + c.getName() + "::" + o.getName() + " -- unsupported case with type parameters for parameter: " + p.getName());
-                return o;
+                return null;
             }
             GraphQLInputType qpt = referenceClassifierInputType(p.getEType());
             if (p.isMany())
@@ -310,12 +385,15 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
             fb.argument(pb);
         }
 
-        GraphQLFieldDefinition f = fb.build();
+        return fb.build();
+    }
 
+    private void addField(@NotNull ETypedElement e, @NotNull GraphQLFieldDefinition f) {
+        EClass c = (EClass) e.eContainer();
         List<GraphQLFieldDefinition> fs = fields.get(c);
         Assert.assertTrue(
                 null != fs,
-                () -> "EOperation: " + c.getName() + "::" + o.getName() + " -- missing fields for " + c.getName());
+                () -> e.eClass().getName() + ": " + c.getName() + "::" + e.getName() + " -- missing fields for " + c.getName());
         fs.add(f);
 
         GraphQLInterfaceType.Builder ib = interfaceBuilders.get(c);
@@ -325,8 +403,6 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
         GraphQLObjectType.Builder ob = objectBuilders.get(c);
         if (null != ob)
             ob.field(f);
-
-        return o;
     }
 
     public @NotNull GraphQLInputType referenceClassifierInputType(@NotNull EClassifier c) {
@@ -377,52 +453,98 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
         return qt;
     }
 
-    public void addBuilds(@NotNull GraphQLSchema.Builder builder) {
+    /**
+     * Gets the packages visited so far
+     *
+     * @return the packages, in visit order
+     */
+    public Collection<EPackage> getPackages() {
+        return Collections.unmodifiableCollection(packages);
+    }
+
+    /**
+     * Gets the GraphQL types built by {@link #build()}
+     *
+     * @return the scalar, enum, interface and object types by classifier
+     */
+    public Map<EClassifier, GraphQLNamedType> getTypes() {
+        return Collections.unmodifiableMap(types);
+    }
+
+    /**
+     * Gets the Query type built by {@link #build()}
+     *
+     * @return the Query type
+     */
+    public GraphQLObjectType getQueryType() {
+        return queryType;
+    }
+
+    /**
+     * Gets the metaclasses whose instances are listed by the fields of the Query type
+     *
+     * @return the metaclasses by Query field name
+     */
+    public Map<String, EClass> getRootQueries() {
+        return Collections.unmodifiableMap(rootQueries);
+    }
+
+    /**
+     * Builds the scalar, enum, interface and object types of the registered classifiers,
+     * and the Query type listing the instances of the root metaclasses
+     */
+    public void build() {
         if (packages.size() > 1) {
             LOGGER.warn("The generated GraphQL schema corresponds to mapping the union of all " + packages.size() + " input metamodel packages.");
         }
 
-        for (GraphQLScalarType.Builder b : scalarBuilders.values()) {
-            builder.additionalType(b.build());
-        }
+        scalarBuilders.forEach((c, b) -> {
+            GraphQLScalarType st = b.build();
+            types.put(c, st);
+        });
 
-        for (GraphQLEnumType.Builder b : enumBuilders.values()) {
-            builder.additionalType(b.build());
-        }
+        enumBuilders.forEach((c, b) -> {
+            GraphQLEnumType et = b.build();
+            types.put(c, et);
+        });
 
         // For each abstract metaclass, add to its builder all the fields of each of its superclasses.
         interfaceBuilders.forEach((c, b) -> {
-            c.getEAllSuperTypes().forEach(sup ->
-                    addSpecificFields(b, fields.getOrDefault(sup, Collections.emptyList())));
+            addSpecificFields(b, getInheritedFields(c).values());
             GraphQLInterfaceType it = b.build();
-            builder.additionalType(it);
             interfaceTypes.put(c, it);
+            types.put(c, it);
         });
 
         // For each concrete metaclass, add to its builder all the fields of each of its superclasses.
         objectBuilders.forEach((c, b) -> {
-            c.getEAllSuperTypes().forEach(sup ->
-                    addSpecificFields(b, fields.getOrDefault(sup, Collections.emptyList())));
+            addSpecificFields(b, getInheritedFields(c).values());
             GraphQLObjectType ot = b.build();
-            builder.additionalType(ot);
             objectTypes.put(c, ot);
+            types.put(c, ot);
         });
 
         GraphQLObjectType.Builder b = GraphQLObjectType.newObject();
         b.name("Query");
 
+        final Set<EClass> indexedMetaclasses = new HashSet<>(allMetaclasses);
+        indexedMetaclasses.addAll(containedMetaclasses);
+        final EcoreQueries.InheritanceIndex index = new EcoreQueries.InheritanceIndex(indexedMetaclasses);
+        final BitSet contained = index.toBitSet(containedMetaclasses);
+        final BitSet containedAncestors = new BitSet();
+        containedMetaclasses.forEach(c -> containedAncestors.or(index.ancestors(c)));
+
         // Candidate root metaclasses:
         // - it is not a contained metaclass
         // - it is not a superclass of a contained metaclass
         // - none of its superclasses is a contained metaclass
         final List<EClass> candidateMetaclasses =
-                allMetaclasses.stream().flatMap(ec -> {
-                            if (!containedMetaclasses.contains(ec) &&
-                                    containedMetaclasses.stream().filter(c -> c.getEAllSuperTypes().contains(ec)).findFirst().isEmpty() &&
-                                    ec.getEAllSuperTypes().stream().filter(containedMetaclasses::contains).findFirst().isEmpty())
-                                return Stream.of(ec);
-                            else
-                                return Stream.empty();
+                allMetaclasses.stream()
+                        .filter(ec -> {
+                            final int id = index.id(ec);
+                            return !contained.get(id) &&
+                                    !containedAncestors.get(id) &&
+                                    !index.ancestors(ec).intersects(contained);
                         })
                         .sorted(Comparator.comparing(EClass::getName))
                         .collect(Collectors.toList());
@@ -430,35 +552,59 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
         // root metaclasses are filtered from the candidate metaclasses as follows:
         // - the candidate is concrete
         // - the candidate is abstract and has at least 1 concrete specialization that is also a candidate.
-        final List<EClass> rootMetaclasses =
-                candidateMetaclasses.stream()
-                        .filter(ec -> !ec.isAbstract() || candidateMetaclasses.stream().anyMatch(c -> !c.isAbstract() && c.getEAllSuperTypes().contains(ec)))
-                        .collect(Collectors.toList());
+        final BitSet concreteCandidates = index.toBitSet(
+                candidateMetaclasses.stream().filter(ec -> !ec.isAbstract()).collect(Collectors.toList()));
+        final BitSet rootMetaclasses = new BitSet();
+        candidateMetaclasses.stream()
+                .filter(ec -> !ec.isAbstract() || index.descendants(ec).intersects(concreteCandidates))
+                .forEach(ec -> rootMetaclasses.set(index.id(ec)));
 
         // TODO: find which interfaces/types are *NOT* contained by any reference
         // These should have toplevel "all..." query fields.
         interfaceTypes.forEach((c, it) -> {
-            if (rootMetaclasses.contains(c)) {
+            if (rootMetaclasses.get(index.id(c))) {
                 GraphQLFieldDefinition.Builder all = GraphQLFieldDefinition.newFieldDefinition();
                 all.name("all" + pluralize(c.getName()));
                 all.type(GraphQLList.list(it));
                 b.field(all);
+                rootQueries.put("all" + pluralize(c.getName()), c);
             }
         });
 
         objectTypes.forEach((c, ot) -> {
-            if (rootMetaclasses.contains(c)) {
+            if (rootMetaclasses.get(index.id(c))) {
                 GraphQLFieldDefinition.Builder all = GraphQLFieldDefinition.newFieldDefinition();
                 all.name("all" + pluralize(c.getName()));
                 all.type(GraphQLList.list(ot));
                 b.field(all);
+                rootQueries.put("all" + pluralize(c.getName()), c);
             }
         });
 
-        builder.query(b);
+        queryType = b.build();
+    }
+
+    /**
+     * Gets the fields a metaclass inherits, following the order of its getEAllSuperTypes()
+     * where the first superclass with a field of a given name wins.
+     * The fields are resolved once per metaclass, from the resolved fields of its direct superclasses.
+     */
+    private Map<String, GraphQLFieldDefinition> getInheritedFields(EClass c) {
+        Map<String, GraphQLFieldDefinition> inherited = inheritedFields.get(c);
+        if (null == inherited) {
+            inherited = new LinkedHashMap<>();
+            for (EClass sup : c.getESuperTypes()) {
+                getInheritedFields(sup).forEach(inherited::putIfAbsent);
+                for (GraphQLFieldDefinition f : fields.getOrDefault(sup, Collections.emptyList())) {
+                    inherited.putIfAbsent(f.getName(), f);
+                }
+            }
+            inheritedFields.put(c, inherited);
+        }
+        return inherited;
     }
 
-    private void addSpecificFields(GraphQLObjectType.Builder b, List<GraphQLFieldDefinition> fs) {
+    private void addSpecificFields(GraphQLObjectType.Builder b, Collection<GraphQLFieldDefinition> fs) {
         for (GraphQLFieldDefinition f : fs) {
             if (!b.hasField(f.getName())) {
                 b.field(f);
@@ -466,7 +612,7 @@ class Ecore2GraphQLVisitor extends EcoreSwitch<EObject> {
         }
     }
 
-    private void addSpecificFields(GraphQLInterfaceType.Builder b, List<GraphQLFieldDefinition> fs) {
+    private void addSpecificFields(GraphQLInterfaceType.Builder b, Collection<GraphQLFieldDefinition> fs) {
         for (GraphQLFieldDefinition f : fs) {
             if (!b.hasField(f.getName())) {
                 b.field(f);
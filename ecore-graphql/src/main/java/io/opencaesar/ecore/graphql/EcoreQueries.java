@@ -18,10 +18,14 @@
  */
 package io.opencaesar.ecore.graphql;
 
-import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.*;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 class EcoreQueries {
@@ -57,27 +61,91 @@ class EcoreQueries {
         return Stream.empty();
     }
 
-    public static Comparator<EClass> inheritanceOrdering = (o1, o2) -> {
-        if (o1 == o2)
-            return 0;
+    /**
+     * An index of the inheritance relation between EClasses.
+     *
+     * Each indexed EClass gets a dense id, and its ancestors and descendants are
+     * precomputed as bit sets of these ids, so set queries over many classes take
+     * time linear in the number of classes.
+     */
+    static class InheritanceIndex {
 
-        final String n1 = o1.getName();
-        final String n2 = o2.getName();
-        final EList<EClass> s1 = o1.getEAllSuperTypes();
-        final EList<EClass> s2 = o2.getEAllSuperTypes();
+        private final Map<EClass, Integer> ids = new HashMap<>();
+        private final List<EClass> classes = new ArrayList<>();
+        private final List<BitSet> ancestors = new ArrayList<>();
+        private final List<BitSet> descendants = new ArrayList<>();
 
-        if (s1.isEmpty()) {
-            if (s2.isEmpty())
-                return n1.compareTo(n2);
-            else
-                return -1;
-        } else if (s2.isEmpty()) {
-            return 1;
-        } else if (s2.contains(o1)) {
-            return -1;
-        } else if (s1.contains(o2)) {
-            return 1;
-        } else
-            return n1.compareTo(n2);
-    };
+        /**
+         * Creates an index of the given EClasses and all their super types
+         *
+         * @param eClasses The EClasses to index
+         */
+        InheritanceIndex(Collection<EClass> eClasses) {
+            eClasses.forEach(this::add);
+            for (int i = 0; i < classes.size(); i++) {
+                final BitSet supers = ancestors.get(i);
+                for (EClass sup : classes.get(i).getEAllSuperTypes()) {
+                    final int j = ids.get(sup);
+                    supers.set(j);
+                    descendants.get(j).set(i);
+                }
+            }
+        }
+
+        private void add(EClass c) {
+            if (!ids.containsKey(c)) {
+                ids.put(c, classes.size());
+                classes.add(c);
+                ancestors.add(new BitSet());
+                descendants.add(new BitSet());
+                c.getEAllSuperTypes().forEach(this::add);
+            }
+        }
+
+        /**
+         * Gets the id of the given EClass
+         *
+         * @param c An indexed EClass
+         * @return The id of the EClass
+         */
+        int id(EClass c) {
+            final Integer id = ids.get(c);
+            if (id == null) {
+                throw new IllegalArgumentException("EClass " + c.getName() + " is not indexed");
+            }
+            return id;
+        }
+
+        /**
+         * Gets the ids of all the (direct and indirect) super types of the given EClass
+         *
+         * @param c An indexed EClass
+         * @return The bit set of super type ids (not to be modified)
+         */
+        BitSet ancestors(EClass c) {
+            return ancestors.get(id(c));
+        }
+
+        /**
+         * Gets the ids of all the (direct and indirect) sub types of the given EClass
+         *
+         * @param c An indexed EClass
+         * @return The bit set of sub type ids (not to be modified)
+         */
+        BitSet descendants(EClass c) {
+            return descendants.get(id(c));
+        }
+
+        /**
+         * Gets the ids of the given EClasses
+         *
+         * @param eClasses Indexed EClasses
+         * @return A new bit set of their ids
+         */
+        BitSet toBitSet(Collection<EClass> eClasses) {
+            final BitSet bits = new BitSet(classes.size());
+            eClasses.forEach(c -> bits.set(id(c)));
+            return bits;
+        }
+    }
 }
@@ -0,0 +1,282 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.graphql;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import graphql.Directives;
+import graphql.introspection.Introspection.DirectiveLocation;
+import graphql.language.AstPrinter;
+import graphql.language.Value;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLDirective;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLEnumValueDefinition;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLFieldsContainer;
+import graphql.schema.GraphQLImplementingType;
+import graphql.schema.GraphQLInterfaceType;
+import graphql.schema.GraphQLNamedOutputType;
+import graphql.schema.GraphQLNamedType;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLTypeUtil;
+import graphql.schema.idl.ScalarInfo;
+
+/**
+ * Writes GraphQL SDL straight from the types built by the visitor, without building and printing
+ * a GraphQLSchema: the types are not validated, and their type references are written by name.
+ * 
+ * The SDL is formatted like graphql-java's SchemaPrinter prints a schema with scalar types and
+ * the schema definition: the built-in directive definitions follow the schema definition, then
+ * the interface, object, enum and scalar types are written in this order, and types, fields,
+ * arguments, implemented interfaces and enum values are sorted by name.
+ */
+class SdlWriter {
+
+    /**
+     * The directives every GraphQL schema defines
+     */
+    private static final List<GraphQLDirective> BUILT_IN_DIRECTIVES = Arrays.asList(
+            Directives.DeprecatedDirective,
+            Directives.IncludeDirective,
+            Directives.SkipDirective,
+            Directives.SpecifiedByDirective);
+
+    /**
+     * The kinds of types in the order they are written
+     */
+    private static final List<Class<? extends GraphQLNamedType>> TYPE_ORDER = Arrays.asList(
+            GraphQLInterfaceType.class,
+            GraphQLObjectType.class,
+            GraphQLEnumType.class,
+            GraphQLScalarType.class);
+
+    private final Writer out;
+
+    private boolean empty = true;
+
+    /**
+     * Creates a new writer
+     * 
+     * @param out The writer receiving the SDL
+     */
+    SdlWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the schema definition with the given query type
+     * 
+     * @param query The query type
+     * @throws IOException when the SDL cannot be written
+     */
+    void writeSchemaDefinition(GraphQLObjectType query) throws IOException {
+        separate();
+        out.write("schema {\n  query: " + query.getName() + "\n}\n");
+    }
+
+    /**
+     * Writes the definitions of the built-in directives, sorted by name
+     * 
+     * @throws IOException when the SDL cannot be written
+     */
+    void writeDirectiveDefinitions() throws IOException {
+        for (GraphQLDirective directive : sortByName(BUILT_IN_DIRECTIVES, GraphQLDirective::getName)) {
+            separate();
+            writeDescription("", directive.getDescription());
+            out.write("directive @" + directive.getName());
+            writeArguments(directive.getArguments());
+            out.write(" on " + directive.validLocations().stream()
+                    .map(DirectiveLocation::name)
+                    .collect(Collectors.joining(" | ")) + "\n");
+        }
+    }
+
+    /**
+     * Writes the definitions of the given types, grouped by kind and sorted by name.
+     * The scalar types of the GraphQL specification are left out.
+     * 
+     * @param types The types
+     * @throws IOException when the SDL cannot be written
+     */
+    void writeTypes(Collection<? extends GraphQLNamedType> types) throws IOException {
+        final List<GraphQLNamedType> sorted = sortByName(types, GraphQLNamedType::getName);
+        for (Class<? extends GraphQLNamedType> kind : TYPE_ORDER) {
+            for (GraphQLNamedType type : sorted) {
+                if (kind.isInstance(type) && !(type instanceof GraphQLScalarType && ScalarInfo.isGraphqlSpecifiedScalar((GraphQLScalarType) type))) {
+                    writeType(type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the definition of the given type
+     * 
+     * @param type A scalar, enum, interface or object type
+     * @throws IOException when the SDL cannot be written
+     */
+    void writeType(GraphQLNamedType type) throws IOException {
+        separate();
+        writeDescription("", type.getDescription());
+        if (type instanceof GraphQLScalarType) {
+            out.write("scalar " + type.getName() + "\n");
+        } else if (type instanceof GraphQLEnumType) {
+            out.write("enum " + type.getName() + " {\n");
+            for (GraphQLEnumValueDefinition value : sortByName(((GraphQLEnumType) type).getValues(), GraphQLEnumValueDefinition::getName)) {
+                writeDescription("  ", value.getDescription());
+                out.write("  " + value.getName() + "\n");
+            }
+            out.write("}\n");
+        } else if (type instanceof GraphQLInterfaceType) {
+            writeFieldsContainer("interface", (GraphQLInterfaceType) type);
+        } else if (type instanceof GraphQLObjectType) {
+            writeFieldsContainer("type", (GraphQLObjectType) type);
+        } else {
+            throw new IllegalArgumentException("Unsupported GraphQL type: " + type.getName());
+        }
+    }
+
+    private <T extends GraphQLFieldsContainer & GraphQLImplementingType> void writeFieldsContainer(String keyword, T type) throws IOException {
+        out.write(keyword + " " + type.getName());
+        final List<GraphQLNamedOutputType> interfaces = type.getInterfaces();
+        if (!interfaces.isEmpty()) {
+            out.write(" implements ");
+            out.write(sortByName(interfaces, GraphQLNamedOutputType::getName).stream()
+                    .map(GraphQLNamedOutputType::getName)
+                    .collect(Collectors.joining(" & ")));
+        }
+        final List<GraphQLFieldDefinition> fields = sortByName(type.getFieldDefinitions(), GraphQLFieldDefinition::getName);
+        if (fields.isEmpty()) {
+            out.write("\n");
+            return;
+        }
+        out.write(" {\n");
+        for (GraphQLFieldDefinition field : fields) {
+            writeDescription("  ", field.getDescription());
+            out.write("  " + field.getName());
+            writeArguments(field.getArguments());
+            out.write(": " + GraphQLTypeUtil.simplePrint(field.getType()) + "\n");
+        }
+        out.write("}\n");
+    }
+
+    /**
+     * Writes the given arguments sorted by name, on one line unless one of them has a description
+     */
+    private void writeArguments(List<GraphQLArgument> arguments) throws IOException {
+        if (arguments.isEmpty()) {
+            return;
+        }
+        final List<GraphQLArgument> sorted = sortByName(arguments, GraphQLArgument::getName);
+        final boolean described = sorted.stream().anyMatch(argument -> argument.getDescription() != null && !argument.getDescription().isEmpty());
+        if (!described) {
+            final StringJoiner joiner = new StringJoiner(", ", "(", ")");
+            for (GraphQLArgument argument : sorted) {
+                joiner.add(argumentDefinition(argument));
+            }
+            out.write(joiner.toString());
+            return;
+        }
+        out.write("(\n");
+        for (int i = 0; i < sorted.size(); i++) {
+            final GraphQLArgument argument = sorted.get(i);
+            writeDescription("    ", argument.getDescription());
+            out.write("    " + argumentDefinition(argument) + (i < sorted.size() - 1 ? ",\n" : "\n"));
+        }
+        out.write("  )");
+    }
+
+    private static String argumentDefinition(GraphQLArgument argument) {
+        String definition = argument.getName() + ": " + GraphQLTypeUtil.simplePrint(argument.getType());
+        if (argument.hasSetDefaultValue()) {
+            final Object value = argument.getArgumentDefaultValue().getValue();
+            if (value instanceof Value) {
+                definition += " = " + AstPrinter.printAst((Value<?>) value);
+            } else if (value instanceof String) {
+                definition += " = \"" + escape((String) value) + "\"";
+            } else {
+                definition += " = " + value;
+            }
+        }
+        return definition;
+    }
+
+    /**
+     * Writes the given description on a single line, or between triple quotes when it has several lines
+     */
+    private void writeDescription(String indent, String description) throws IOException {
+        if (description == null || description.isEmpty()) {
+            return;
+        }
+        final String[] lines = description.split("\n");
+        if (lines.length == 1) {
+            out.write(indent + "\"" + escape(lines[0]) + "\"\n");
+        } else if (lines.length > 1) {
+            out.write(indent + "\"\"\"\n");
+            for (String line : lines) {
+                out.write(indent + line.replace("\"\"\"", "\\\"\"\"") + "\n");
+            }
+            out.write(indent + "\"\"\"\n");
+        }
+    }
+
+    /**
+     * Escapes the given string to write it between double quotes
+     */
+    private static String escape(String s) {
+        final StringBuilder escaped = new StringBuilder(s.length());
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"': escaped.append("\\\""); break;
+                case '\\': escaped.append("\\\\"); break;
+                case '\b': escaped.append("\\b"); break;
+                case '\f': escaped.append("\\f"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private void separate() throws IOException {
+        if (!empty) {
+            out.write("\n");
+        }
+        empty = false;
+    }
+
+    private static <T> List<T> sortByName(Collection<? extends T> elements, Function<T, String> name) {
+        final List<T> sorted = new ArrayList<>(elements);
+        sorted.sort(Comparator.comparing(name));
+        return sorted;
+    }
+}
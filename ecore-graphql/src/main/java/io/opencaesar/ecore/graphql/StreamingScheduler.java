@@ -0,0 +1,223 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.graphql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+
+import io.opencaesar.ecore.common.ParallelResourceLoader;
+
+/**
+ * Processes input files one at a time, releasing the loaded resources that are no longer needed,
+ * so that the heap grows with the largest dependency closure rather than with the whole input.
+ * 
+ * The dependencies between the inputs are scanned from their text before any of them is loaded:
+ * the packages an Xcore file names, and the documents of the URIs an XMI file (e.g. a GenModel) holds.
+ * Each input is processed right before the inputs it depends on, and every input counts as a
+ * referencer of each input in its dependency closure. After each input, the file resources with
+ * no referencer left are unloaded, so a model shared by several inputs is loaded once and kept
+ * until the last of them is processed. A dependency the scan misses is still resolved when the
+ * input is loaded, it is just released after that input.
+ */
+class StreamingScheduler {
+
+    private static final Pattern XCORE_PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)", Pattern.MULTILINE);
+
+    private static final Pattern QUALIFIED_NAME = Pattern.compile("[A-Za-z_]\\w*(?:\\.[A-Za-z_]\\w*)+");
+
+    private static final Pattern XMI_REFERENCE = Pattern.compile("[^\\s\"'<>=#]+(?=#)");
+
+    private final Logger LOGGER = LogManager.getLogger(StreamingScheduler.class);
+
+    private final ResourceSet resourceSet;
+
+    private final ParallelResourceLoader loader;
+
+    /**
+     * Creates a new scheduler
+     * 
+     * @param resourceSet The resource set to load the inputs into
+     * @param loader The loader of the input files
+     */
+    StreamingScheduler(ResourceSet resourceSet, ParallelResourceLoader loader) {
+        this.resourceSet = resourceSet;
+        this.loader = loader;
+    }
+
+    /**
+     * Processes the given input files
+     * 
+     * @param inputFiles The input files
+     * @param processor The processing of an input file and its loaded resource
+     */
+    void run(List<File> inputFiles, BiConsumer<File, Resource> processor) {
+        final Map<File, List<File>> dependencies = scanDependencies(inputFiles);
+
+        final Map<File, Set<File>> closures = new HashMap<>();
+        final Map<URI, Integer> referencers = new HashMap<>();
+        for (final File inputFile : inputFiles) {
+            final Set<File> closure = getClosure(inputFile, dependencies);
+            closures.put(inputFile, closure);
+            for (final File file : closure) {
+                referencers.merge(toURI(file), 1, Integer::sum);
+            }
+        }
+
+        for (final File inputFile : schedule(inputFiles, dependencies)) {
+            final Resource resource = loader.load(resourceSet, Collections.singletonList(inputFile)).get(inputFile);
+            if (resource != null) {
+                processor.accept(inputFile, resource);
+            }
+            for (final File file : closures.get(inputFile)) {
+                referencers.computeIfPresent(toURI(file), (uri, count) -> (count > 1) ? count - 1 : null);
+            }
+            release(referencers.keySet());
+        }
+    }
+
+    /**
+     * Orders the inputs so that the inputs an input depends on are processed right after it,
+     * while they are still loaded
+     */
+    private List<File> schedule(List<File> inputFiles, Map<File, List<File>> dependencies) {
+        final Set<File> order = new LinkedHashSet<>();
+        for (final File inputFile : inputFiles) {
+            final Deque<File> pending = new ArrayDeque<>();
+            pending.push(inputFile);
+            while (!pending.isEmpty()) {
+                final File next = pending.pop();
+                if (order.add(next)) {
+                    final List<File> nextDependencies = dependencies.get(next);
+                    for (int i = nextDependencies.size() - 1; i >= 0; i--) {
+                        pending.push(nextDependencies.get(i));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(order);
+    }
+
+    private Set<File> getClosure(File inputFile, Map<File, List<File>> dependencies) {
+        final Set<File> closure = new HashSet<>();
+        final Deque<File> pending = new ArrayDeque<>();
+        pending.add(inputFile);
+        while (!pending.isEmpty()) {
+            final File next = pending.poll();
+            if (closure.add(next)) {
+                pending.addAll(dependencies.get(next));
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * Scans the inputs each input depends on directly, in input order
+     */
+    private Map<File, List<File>> scanDependencies(List<File> inputFiles) {
+        final Map<File, String> texts = new LinkedHashMap<>();
+        final Map<URI, File> inputsByURI = new HashMap<>();
+        final Map<String, List<File>> inputsByPackage = new HashMap<>();
+        for (final File inputFile : inputFiles) {
+            String text = "";
+            try {
+                text = new String(Files.readAllBytes(inputFile.toPath()), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                LOGGER.warn("Cannot scan the dependencies of " + inputFile + " : " + e.getMessage());
+            }
+            texts.put(inputFile, text);
+            inputsByURI.put(toURI(inputFile), inputFile);
+            if (isXcore(inputFile)) {
+                final Matcher matcher = XCORE_PACKAGE.matcher(text);
+                if (matcher.find()) {
+                    inputsByPackage.computeIfAbsent(matcher.group(1), k -> new ArrayList<>()).add(inputFile);
+                }
+            }
+        }
+
+        final Map<File, List<File>> dependencies = new HashMap<>();
+        for (final File inputFile : inputFiles) {
+            final Set<File> referenced = new HashSet<>();
+            final String text = texts.get(inputFile);
+            if (isXcore(inputFile)) {
+                final Matcher matcher = QUALIFIED_NAME.matcher(text);
+                while (matcher.find()) {
+                    final String name = matcher.group();
+                    for (int dot = name.indexOf('.'); dot != -1; dot = name.indexOf('.', dot + 1)) {
+                        referenced.addAll(inputsByPackage.getOrDefault(name.substring(0, dot), Collections.emptyList()));
+                    }
+                }
+            } else {
+                final URI baseURI = toURI(inputFile);
+                final Matcher matcher = XMI_REFERENCE.matcher(text);
+                while (matcher.find()) {
+                    final File file = inputsByURI.get(URI.createURI(matcher.group()).resolve(baseURI));
+                    if (file != null) {
+                        referenced.add(file);
+                    }
+                }
+            }
+            referenced.remove(inputFile);
+            final List<File> ordered = new ArrayList<>(inputFiles);
+            ordered.retainAll(referenced);
+            dependencies.put(inputFile, ordered);
+        }
+        return dependencies;
+    }
+
+    private static boolean isXcore(File file) {
+        return file.getName().endsWith(".xcore");
+    }
+
+    private static URI toURI(File file) {
+        return URI.createFileURI(file.getAbsolutePath());
+    }
+
+    private void release(Set<URI> retained) {
+        for (final Resource resource : new ArrayList<>(resourceSet.getResources())) {
+            // only file resources are released, library resources are shared by every input
+            if (resource.getURI() != null && resource.getURI().isFile() && !retained.contains(resource.getURI())) {
+                LOGGER.debug("Unloading: " + resource.getURI());
+                resource.unload();
+                resourceSet.getResources().remove(resource);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.graphql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+
+/**
+ * Tests running GraphQL queries over instance models saved to and loaded from files
+ */
+public class Ecore2GraphQLRuntimeTest {
+
+    private static final String NS_URI = "http://opencaesar.io/test/library";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Ecore2GraphQLRuntime runtime;
+
+    private ResourceSet instances;
+
+    @Before
+    public void saveAndLoadInstances() throws IOException {
+        final File metamodelFile = new File(folder.getRoot(), "library.ecore");
+        final File instancesFile = new File(folder.getRoot(), "items.xmi");
+
+        final Resource metamodel = newResourceSet().createResource(URI.createFileURI(metamodelFile.getAbsolutePath()));
+        metamodel.getContents().add(TestModels.createLibrary("library"));
+        metamodel.save(null);
+
+        // the instances are created with another copy of the metamodel, registered by nsURI
+        final ResourceSet writeSet = newResourceSet();
+        final EPackage writePackage = loadPackage(metamodelFile);
+        writeSet.getPackageRegistry().put(NS_URI, writePackage);
+        final Resource items = writeSet.createResource(URI.createFileURI(instancesFile.getAbsolutePath()));
+        final EObject dune = createBook(writePackage, "Dune", 412, "fiction");
+        final EObject wired = createMagazine(writePackage, "Wired", 7);
+        final EObject cosmos = createBook(writePackage, "Cosmos", 365, "science");
+        items.getContents().addAll(Arrays.asList(dune, wired, cosmos));
+        setRelated(dune, cosmos, wired);
+        items.save(null);
+
+        // the runtime is created from yet another copy of the metamodel
+        runtime = new Ecore2GraphQLRuntime(Collections.singletonList(loadPackage(metamodelFile).eResource()));
+        instances = newResourceSet();
+        instances.getPackageRegistry().put(NS_URI, loadPackage(metamodelFile));
+        instances.getResource(URI.createFileURI(instancesFile.getAbsolutePath()), true);
+    }
+
+    @Test
+    public void queryInstancesOfMetamodelLoadedElsewhere() {
+        final ExecutionResult result = runtime.execute("{ allBooks { title pages genre } allItems { title } }", instances);
+        assertTrue(result.getErrors().toString(), result.getErrors().isEmpty());
+        final Map<String, Object> data = result.getData();
+        // enum values are named after the upper case literals
+        assertEquals(Arrays.asList(
+                book("Dune", 412, "FICTION"),
+                book("Cosmos", 365, "SCIENCE")), data.get("allBooks"));
+        // the instances of a super type are listed in content order, whatever their class
+        assertEquals(Arrays.asList(
+                title("Dune"),
+                title("Wired"),
+                title("Cosmos")), data.get("allItems"));
+    }
+
+    @Test
+    public void queryReferenceField() {
+        final ExecutionResult result = runtime.execute("{ allBooks { title related { title } } }", instances);
+        assertTrue(result.getErrors().toString(), result.getErrors().isEmpty());
+        final Map<String, Object> dune = new LinkedHashMap<>();
+        dune.put("title", "Dune");
+        dune.put("related", Arrays.asList(title("Cosmos"), title("Wired")));
+        final Map<String, Object> cosmos = new LinkedHashMap<>();
+        cosmos.put("title", "Cosmos");
+        cosmos.put("related", Collections.emptyList());
+        final Map<String, Object> data = result.getData();
+        assertEquals(Arrays.asList(dune, cosmos), data.get("allBooks"));
+    }
+
+    @Test
+    public void queryOperationFieldOfDynamicObjects() {
+        final ExecutionResult result = runtime.execute(
+                "{ allBooks { title summary(style: \"short\", length: 10) } allMagazines { title } }", instances);
+        // the operation has no body to invoke on dynamic objects: each field yields an error,
+        // and the non-null field nulls its book, but the rest of the query runs
+        final List<GraphQLError> errors = result.getErrors();
+        assertEquals(errors.toString(), 2, errors.size());
+        for (GraphQLError error : errors) {
+            assertTrue(error.getMessage(), error.getMessage().startsWith("Cannot invoke EOperation Book::summary"));
+        }
+        final Map<String, Object> data = result.getData();
+        assertEquals(Arrays.asList(null, null), data.get("allBooks"));
+        assertEquals(Collections.singletonList(title("Wired")), data.get("allMagazines"));
+    }
+
+    private static ResourceSet newResourceSet() {
+        final ResourceSet resourceSet = new ResourceSetImpl();
+        resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+        return resourceSet;
+    }
+
+    private static EPackage loadPackage(File file) {
+        final Resource resource = newResourceSet().getResource(URI.createFileURI(file.getAbsolutePath()), true);
+        return (EPackage) resource.getContents().get(0);
+    }
+
+    private static Map<String, Object> title(String title) {
+        return Collections.singletonMap("title", title);
+    }
+
+    private static Map<String, Object> book(String title, int pages, String genre) {
+        final Map<String, Object> book = new LinkedHashMap<>();
+        book.put("title", title);
+        book.put("pages", pages);
+        book.put("genre", genre);
+        return book;
+    }
+
+    private static EObject createBook(EPackage ePackage, String title, int pages, String genre) {
+        final EClass eClass = (EClass) ePackage.getEClassifier("Book");
+        final EEnum eEnum = (EEnum) ePackage.getEClassifier("Genre");
+        final EObject book = EcoreUtil.create(eClass);
+        book.eSet(eClass.getEStructuralFeature("title"), title);
+        book.eSet(eClass.getEStructuralFeature("pages"), pages);
+        book.eSet(eClass.getEStructuralFeature("genre"), eEnum.getEEnumLiteral(genre));
+        return book;
+    }
+
+    private static EObject createMagazine(EPackage ePackage, String title, int issue) {
+        final EClass eClass = (EClass) ePackage.getEClassifier("Magazine");
+        final EObject magazine = EcoreUtil.create(eClass);
+        magazine.eSet(eClass.getEStructuralFeature("title"), title);
+        magazine.eSet(eClass.getEStructuralFeature("issue"), issue);
+        return magazine;
+    }
+
+    private static void setRelated(EObject book, EObject... related) {
+        book.eSet(book.eClass().getEStructuralFeature("related"), Arrays.asList(related));
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.graphql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.junit.Test;
+
+/**
+ * Tests the conversion of Ecore models to GraphQL documents
+ */
+public class Ecore2GraphQLTest {
+
+    @Test
+    public void convertByPackageWritesSchemaDocument() {
+        final Ecore2GraphQL e2g = new Ecore2GraphQL(createResource("library"));
+        e2g.analyze();
+        final Map<String, String> documents = e2g.convertByPackage();
+        assertTrue(documents.containsKey("library"));
+        assertTrue(documents.get(Ecore2GraphQL.SCHEMA).contains("type Query"));
+    }
+
+    @Test
+    public void convertByPackageRejectsPackageNamedSchema() {
+        final Ecore2GraphQL e2g = new Ecore2GraphQL(createResource(Ecore2GraphQL.SCHEMA));
+        e2g.analyze();
+        try {
+            e2g.convertByPackage();
+            fail("A package named " + Ecore2GraphQL.SCHEMA + " should not overwrite the schema document");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains(Ecore2GraphQL.SCHEMA));
+        }
+    }
+
+    @Test
+    public void convertSdlWritesSameSdlAsConvert() {
+        final Ecore2GraphQL e2g = new Ecore2GraphQL(createResource("library"));
+        e2g.analyze();
+        assertEquals(e2g.convert(), e2g.convertSdl());
+    }
+
+    @Test
+    public void convertByPackageDefinesSameSchemaAsConvert() {
+        final Ecore2GraphQL e2g = new Ecore2GraphQL(createResource("library"));
+        e2g.analyze();
+        final Map<String, String> documents = e2g.convertByPackage();
+        Ecore2GraphQL.validate(documents.values().toArray(new String[0]));
+        assertTrue(documents.get(Ecore2GraphQL.SCHEMA).contains("directive @deprecated"));
+    }
+
+    private static Resource createResource(String name) {
+        final Resource resource = new ResourceImpl(URI.createURI("test:/" + name + ".ecore"));
+        resource.getContents().add(TestModels.createLibrary(name));
+        return resource;
+    }
+}
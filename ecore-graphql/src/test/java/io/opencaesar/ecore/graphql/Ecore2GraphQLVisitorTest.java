@@ -0,0 +1,272 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.graphql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EEnumLiteral;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EOperation;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EParameter;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.ETypedElement;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.junit.Test;
+
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLEnumValueDefinition;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLFieldsContainer;
+import graphql.schema.GraphQLNamedOutputType;
+import graphql.schema.GraphQLNamedType;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLTypeUtil;
+
+/**
+ * Tests that the two-phase analysis builds the same types as visiting the model serially,
+ * with the inherited fields of each class merged like a walk of all its ancestors
+ */
+public class Ecore2GraphQLVisitorTest {
+
+    private static final int CLASSES = 200;
+    private static final int RUNS = 3;
+    private static final int[] THREADS = { 1, 2, 4, 8 };
+
+    @Test
+    public void parallelAnalysisMatchesSerialVisit() {
+        final Resource resource = createResource(CLASSES);
+
+        final Ecore2GraphQLVisitor serial = new Ecore2GraphQLVisitor();
+        for (TreeIterator<EObject> it = resource.getAllContents(); it.hasNext(); ) {
+            serial.doSwitch(it.next());
+        }
+        serial.build();
+        final String expected = dump(serial);
+
+        String expectedSchema = null;
+        for (int run = 0; run < RUNS; run++) {
+            for (int threads : THREADS) {
+                final ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    final Ecore2GraphQL e2g = new Ecore2GraphQL(resource);
+                    e2g.analyze(pool);
+                    final String context = "run " + run + " with " + threads + " threads";
+                    assertEquals(context, expected, dump(e2g.getVisitor()));
+                    final String schema = e2g.convert();
+                    if (null == expectedSchema) {
+                        expectedSchema = schema;
+                    }
+                    assertEquals(context, expectedSchema, schema);
+                    assertEquals(context, schema, e2g.convertSdl());
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void inheritedFieldsMatchPerAncestorMerge() {
+        final Resource resource = createResource(CLASSES);
+        final Ecore2GraphQL e2g = new Ecore2GraphQL(resource);
+        e2g.analyze();
+        final Map<EClassifier, GraphQLNamedType> types = e2g.getVisitor().getTypes();
+
+        for (EClassifier c : ((EPackage) resource.getContents().get(0)).getEClassifiers()) {
+            if (!(c instanceof EClass)) {
+                continue;
+            }
+            final EClass eClass = (EClass) c;
+
+            // merge the fields of every ancestor in getEAllSuperTypes() order, the first field of a name winning
+            final Map<String, String> expected = new LinkedHashMap<>();
+            addFields(expected, eClass);
+            for (EClass superClass : eClass.getEAllSuperTypes()) {
+                addFields(expected, superClass);
+            }
+
+            final Map<String, String> actual = new LinkedHashMap<>();
+            for (GraphQLFieldDefinition f : ((GraphQLFieldsContainer) types.get(eClass)).getFieldDefinitions()) {
+                actual.put(f.getName(), f.getDescription());
+            }
+            assertEquals(eClass.getName(), new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+        }
+    }
+
+    /**
+     * Adds the description of each field the given class declares, unless a field of that name was added already
+     */
+    private static void addFields(Map<String, String> fields, EClass eClass) {
+        for (EObject eo : eClass.eContents()) {
+            if (eo instanceof EStructuralFeature || eo instanceof EOperation) {
+                final String name = ((ETypedElement) eo).getName();
+                fields.putIfAbsent(name, eo.eClass().getName() + " " + eClass.getName() + "::" + name);
+            }
+        }
+    }
+
+    /**
+     * Prints the analyzed types sorted by name, with their fields, arguments, interfaces
+     * and enum values in the order they were added, followed by the Query type
+     */
+    static String dump(Ecore2GraphQLVisitor v) {
+        final List<GraphQLNamedType> types = new ArrayList<>(v.getTypes().values());
+        types.sort(Comparator.comparing(GraphQLNamedType::getName));
+        types.add(v.getQueryType());
+        final StringBuilder out = new StringBuilder();
+        for (GraphQLNamedType type : types) {
+            out.append(type.getClass().getSimpleName()).append(' ').append(type.getName()).append('\n');
+            if (type instanceof GraphQLObjectType) {
+                for (GraphQLNamedOutputType i : ((GraphQLObjectType) type).getInterfaces()) {
+                    out.append("  implements ").append(i.getName()).append('\n');
+                }
+            }
+            if (type instanceof GraphQLEnumType) {
+                for (GraphQLEnumValueDefinition value : ((GraphQLEnumType) type).getValues()) {
+                    out.append("  ").append(value.getName()).append('\n');
+                }
+            }
+            if (type instanceof GraphQLFieldsContainer) {
+                for (GraphQLFieldDefinition f : ((GraphQLFieldsContainer) type).getFieldDefinitions()) {
+                    out.append("  ").append(f.getName());
+                    for (GraphQLArgument a : f.getArguments()) {
+                        out.append(' ').append(a.getName()).append(": ").append(GraphQLTypeUtil.simplePrint(a.getType()));
+                    }
+                    out.append(": ").append(GraphQLTypeUtil.simplePrint(f.getType()))
+                            .append(" # ").append(f.getDescription()).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Creates a package of the given number of classes, each with up to three superclasses among
+     * the previous ones, attributes, an operation and a reference whose names repeat across classes,
+     * so subclasses inherit fields of the same name from several superclasses. Each name always has
+     * the same type and multiplicity, so the fields a class inherits agree with those of its interfaces
+     */
+    static Resource createResource(int classes) {
+        final EcoreFactory factory = EcoreFactory.eINSTANCE;
+        final Random random = new Random(42);
+        final EPackage ePackage = factory.createEPackage();
+        ePackage.setName("synthetic");
+        ePackage.setNsPrefix("synthetic");
+        ePackage.setNsURI("http://opencaesar.io/test/synthetic");
+
+        final EEnum kind = factory.createEEnum();
+        kind.setName("Kind");
+        for (String literalName : new String[] { "small", "medium", "large" }) {
+            final EEnumLiteral literal = factory.createEEnumLiteral();
+            literal.setName(literalName);
+            literal.setValue(kind.getELiterals().size());
+            kind.getELiterals().add(literal);
+        }
+        ePackage.getEClassifiers().add(kind);
+
+        final String[] attributeNames = { "name", "label", "size", "weight", "enabled", "kind" };
+        final EClassifier[] attributeTypes = {
+                EcorePackage.Literals.ESTRING, EcorePackage.Literals.ESTRING, EcorePackage.Literals.EINT,
+                EcorePackage.Literals.EINT, EcorePackage.Literals.EBOOLEAN, kind };
+        final int[] attributeUpperBounds = { 1, -1, 1, -1, 1, 1 };
+        final String[] operationNames = { "describe", "measure" };
+        final String[] referenceNames = { "owned", "next", "parts" };
+        final boolean[] referenceContainments = { true, false, true };
+        final int[] referenceUpperBounds = { 1, 1, -1 };
+
+        final List<EClass> eClasses = new ArrayList<>();
+        for (int i = 0; i < classes; i++) {
+            final EClass eClass = factory.createEClass();
+            eClass.setName("Class" + i);
+            eClass.setAbstract(i % 3 == 0);
+            ePackage.getEClassifiers().add(eClass);
+            eClasses.add(eClass);
+        }
+
+        for (int i = 0; i < classes; i++) {
+            final EClass eClass = eClasses.get(i);
+            for (int s = random.nextInt(4); s > 0 && i > 0; s--) {
+                final EClass superClass = eClasses.get(random.nextInt(i));
+                if (!eClass.getESuperTypes().contains(superClass)) {
+                    eClass.getESuperTypes().add(superClass);
+                }
+            }
+
+            final List<String> names = new ArrayList<>();
+            for (int a = random.nextInt(3); a >= 0; a--) {
+                final int n = random.nextInt(attributeNames.length);
+                final String name = attributeNames[n];
+                if (names.contains(name)) {
+                    continue;
+                }
+                names.add(name);
+                final EAttribute attribute = factory.createEAttribute();
+                attribute.setName(name);
+                attribute.setEType(attributeTypes[n]);
+                attribute.setUpperBound(attributeUpperBounds[n]);
+                eClass.getEStructuralFeatures().add(attribute);
+            }
+
+            if (random.nextBoolean()) {
+                final EOperation operation = factory.createEOperation();
+                operation.setName(operationNames[random.nextInt(operationNames.length)]);
+                operation.setEType(EcorePackage.Literals.ESTRING);
+                final EParameter parameter = factory.createEParameter();
+                parameter.setName("depth");
+                parameter.setEType(EcorePackage.Literals.EINT);
+                operation.getEParameters().add(parameter);
+                eClass.getEOperations().add(operation);
+            }
+
+            if (i > 0 && random.nextBoolean()) {
+                final int n = random.nextInt(referenceNames.length);
+                final EReference reference = factory.createEReference();
+                reference.setName(referenceNames[n]);
+                reference.setEType(eClasses.get(n + 1));
+                reference.setContainment(referenceContainments[n]);
+                reference.setUpperBound(referenceUpperBounds[n]);
+                eClass.getEStructuralFeatures().add(reference);
+            }
+        }
+
+        final Resource resource = new ResourceImpl(URI.createURI("test:/synthetic.ecore"));
+        resource.getContents().add(ePackage);
+        return resource;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.graphql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.opencaesar.ecore.common.ParallelResourceLoader;
+import io.opencaesar.ecore.common.PhaseProfiler;
+
+/**
+ * Tests that streaming the inputs loads a model shared by several inputs only once
+ */
+public class StreamingSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadsSharedDependencyOnce() throws IOException {
+        final File input = folder.newFolder("input");
+        final ResourceSet writeSet = new ResourceSetImpl();
+        writeSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("ecore", new EcoreResourceFactoryImpl());
+        final EClass item = createClass(writeSet, input, "base", "Item", null);
+        createClass(writeSet, input, "first", "First", item);
+        createClass(writeSet, input, "unrelated", "Unrelated", null);
+        createClass(writeSet, input, "second", "Second", item);
+        for (final Resource resource : writeSet.getResources()) {
+            resource.save(null);
+        }
+
+        // the inputs sharing the base are not adjacent, and the base comes last
+        final List<File> inputFiles = new ArrayList<>();
+        for (final String name : new String[] { "first", "unrelated", "second", "base" }) {
+            inputFiles.add(new File(input, name + ".ecore"));
+        }
+
+        final CountingResourceSet resourceSet = new CountingResourceSet();
+        resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("ecore", new EcoreResourceFactoryImpl());
+        final ParallelResourceLoader loader = new ParallelResourceLoader(1, null, new PhaseProfiler(false));
+        final List<String> processed = new ArrayList<>();
+        new StreamingScheduler(resourceSet, loader).run(inputFiles, (inputFile, resource) -> {
+            EcoreUtil.resolveAll(resource);
+            assertTrue(EcoreUtil.UnresolvedProxyCrossReferencer.find(resource).isEmpty());
+            processed.add(inputFile.getName());
+        });
+
+        assertEquals(Arrays.asList("first.ecore", "base.ecore", "unrelated.ecore", "second.ecore"), processed);
+        for (final File inputFile : inputFiles) {
+            assertEquals(inputFile.getName(), Integer.valueOf(1), resourceSet.loads.get(URI.createFileURI(inputFile.getAbsolutePath())));
+        }
+    }
+
+    /**
+     * Creates a package of one class, with an optional super class, in a resource of its own
+     */
+    private static EClass createClass(ResourceSet resourceSet, File folder, String packageName, String className, EClass superClass) {
+        final EPackage ePackage = EcoreFactory.eINSTANCE.createEPackage();
+        ePackage.setName(packageName);
+        ePackage.setNsPrefix(packageName);
+        ePackage.setNsURI("http://opencaesar.io/test/" + packageName);
+        final EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+        eClass.setName(className);
+        if (superClass != null) {
+            eClass.getESuperTypes().add(superClass);
+        }
+        ePackage.getEClassifiers().add(eClass);
+        final Resource resource = resourceSet.createResource(URI.createFileURI(new File(folder, packageName + ".ecore").getAbsolutePath()));
+        resource.getContents().add(ePackage);
+        return eClass;
+    }
+
+    /**
+     * A resource set counting the loads of each resource
+     */
+    private static class CountingResourceSet extends ResourceSetImpl {
+
+        private final Map<URI, Integer> loads = new HashMap<>();
+
+        @Override
+        protected void demandLoad(Resource resource) throws IOException {
+            loads.merge(resource.getURI(), 1, Integer::sum);
+            super.demandLoad(resource);
+        }
+    }
+}
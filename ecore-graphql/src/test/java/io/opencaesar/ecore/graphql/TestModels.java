@@ -0,0 +1,116 @@
+/**
+ * 
+ * Copyright 2019 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore.graphql;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EEnumLiteral;
+import org.eclipse.emf.ecore.EOperation;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EParameter;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+
+/**
+ * Creates the metamodels of the tests
+ */
+final class TestModels {
+
+    private TestModels() {
+    }
+
+    /**
+     * Creates a package with an abstract class Item and its concrete sub classes Book and Magazine,
+     * an enum, a data type, single and many valued attributes, a reference and an operation with parameters
+     *
+     * @param name the name and prefix of the package, which also ends its nsURI
+     * @return the package
+     */
+    static EPackage createLibrary(String name) {
+        final EcoreFactory factory = EcoreFactory.eINSTANCE;
+        final EPackage ePackage = factory.createEPackage();
+        ePackage.setName(name);
+        ePackage.setNsPrefix(name);
+        ePackage.setNsURI("http://opencaesar.io/test/" + name);
+
+        final EEnum genre = factory.createEEnum();
+        genre.setName("Genre");
+        for (String literalName : new String[] { "fiction", "science", "history" }) {
+            final EEnumLiteral literal = factory.createEEnumLiteral();
+            literal.setName(literalName);
+            literal.setValue(genre.getELiterals().size());
+            genre.getELiterals().add(literal);
+        }
+        ePackage.getEClassifiers().add(genre);
+
+        final EDataType isbn = factory.createEDataType();
+        isbn.setName("Isbn");
+        isbn.setInstanceClassName("java.lang.String");
+        ePackage.getEClassifiers().add(isbn);
+
+        final EClass item = factory.createEClass();
+        item.setName("Item");
+        item.setAbstract(true);
+        addAttribute(item, "title", EcorePackage.Literals.ESTRING, 1);
+        ePackage.getEClassifiers().add(item);
+
+        final EClass book = factory.createEClass();
+        book.setName("Book");
+        book.getESuperTypes().add(item);
+        addAttribute(book, "pages", EcorePackage.Literals.EINT, 1);
+        addAttribute(book, "authors", EcorePackage.Literals.ESTRING, -1);
+        addAttribute(book, "genre", genre, 1);
+        addAttribute(book, "isbn", isbn, 1);
+        final EReference related = factory.createEReference();
+        related.setName("related");
+        related.setEType(item);
+        related.setUpperBound(-1);
+        book.getEStructuralFeatures().add(related);
+        final EOperation summary = factory.createEOperation();
+        summary.setName("summary");
+        summary.setEType(EcorePackage.Literals.ESTRING);
+        for (String parameterName : new String[] { "style", "length" }) {
+            final EParameter parameter = factory.createEParameter();
+            parameter.setName(parameterName);
+            parameter.setEType("length".equals(parameterName) ? EcorePackage.Literals.EINT : EcorePackage.Literals.ESTRING);
+            summary.getEParameters().add(parameter);
+        }
+        book.getEOperations().add(summary);
+        ePackage.getEClassifiers().add(book);
+
+        final EClass magazine = factory.createEClass();
+        magazine.setName("Magazine");
+        magazine.getESuperTypes().add(item);
+        addAttribute(magazine, "issue", EcorePackage.Literals.EINT, 1);
+        ePackage.getEClassifiers().add(magazine);
+        return ePackage;
+    }
+
+    private static void addAttribute(EClass eClass, String name, EClassifier type, int upperBound) {
+        final EAttribute attribute = EcoreFactory.eINSTANCE.createEAttribute();
+        attribute.setName(name);
+        attribute.setEType(type);
+        attribute.setUpperBound(upperBound);
+        eClass.getEStructuralFeatures().add(attribute);
+    }
+}